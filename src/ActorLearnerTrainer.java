@@ -0,0 +1,232 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Training with several actor threads and a single learner.
+ * 
+ * Actors play training games on their own GameSession, choosing actions with Driver's
+ * exploration strategy on the latest published policy, a frozen copy of the Q-table.  Every
+ * transition goes into the actor's own TransitionRing as primitive ints.  The learner, running
+ * on the calling thread, drains the rings in batches and is the only thread that touches the
+ * Q-table, so updates need no synchronisation and the table's cache lines are not bounced
+ * between cores.  Every snapshotInterval transitions it republishes the policy.
+ * 
+ * Actors play their games with Driver's GameLoop, so self-play, action repeat and rewards are
+ * those of Driver.playGame, and the learner applies Driver's learner through
+ * Driver.learnTransition.  A learner that picks the next action during its update, like SARSA,
+ * picks it on the learner thread from the current table rather than the one the actor played.
+ * 
+ * Each actor has its own bounce randomizer, from Driver.newBounceRandom, but training is not
+ * reproducible even with a seed: which policy an actor plays and the order in which the
+ * learner drains the rings depend on thread scheduling.
+ */
+public class ActorLearnerTrainer
+{
+	//records each ring can hold, actors wait when their ring is full.  Kept small since it bounds
+	//how far the actors play ahead of the learner, and a policy lagging further learns worse
+	private static int RING_CAPACITY = 1024;
+	
+	//maximum records taken from one ring at a time
+	private static int BATCH_RECORDS = 1024;
+	
+	//state row of the record marking the end of a game, the reward field holds the bounces
+	private static final int END_OF_GAME = -1;
+	
+	//current state row of the record of a transition learned without a loss in self-play
+	private static final int NO_LOSS = -2;
+	
+	private int actors;
+	private GameLoop loop;
+	private int snapshotInterval;
+	private ExplorationStrategy exploration;
+	
+	private TransitionRing [] rings;
+	private AtomicInteger gamesLeft = new AtomicInteger();
+	private AtomicInteger actorsRunning = new AtomicInteger();
+	private volatile Throwable actorFailure = null;
+	
+	//frozen copy of the Q-table read by the actors, replaced as a whole by the learner
+	private volatile QTable policy;
+	
+	
+	/**
+	 * @param actors				number of actor threads
+	 * @param loop					step loop of the games
+	 * @param snapshotInterval		transitions learned between published policies
+	 */
+	public ActorLearnerTrainer(int actors, GameLoop loop, int snapshotInterval)
+	{
+		this.actors = actors;
+		this.loop = loop;
+		this.snapshotInterval = snapshotInterval;
+	}
+	
+	
+	/**
+	 * Play training games on the actor threads and learn from them on the calling thread.
+	 * The bounces of each game are passed to Driver.recordTrainingGame.
+	 * 
+	 * @param games		number of training games
+	 * @throws InterruptedException
+	 */
+	public void train(int games) throws InterruptedException
+	{
+		gamesLeft.set(games);
+		actorsRunning.set(actors);
+		rings = new TransitionRing[actors];
+		exploration = Driver.getExploration();
+		publish();
+		
+		Thread [] threads = new Thread[actors];
+		for (int i = 0; i < actors; i++)
+		{
+			final TransitionRing ring = new TransitionRing(RING_CAPACITY);
+			final long seed = System.nanoTime() + i;
+			final Random bounces = Driver.newBounceRandom();
+			rings[i] = ring;
+			
+			threads[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						act(ring, new Random(seed), bounces);
+					}
+					catch (Throwable e)
+					{
+						actorFailure = e;
+						gamesLeft.set(0);
+					}
+					finally
+					{
+						actorsRunning.decrementAndGet();
+					}
+				}
+			}, "actor-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		
+		learn();
+		
+		for (Thread thread : threads)
+			thread.join();
+		
+		if (actorFailure != null)
+			throw new IllegalStateException("Actor failed", actorFailure);
+	}
+	
+	
+	/**
+	 * Body of the learner.  Drains the rings round robin until every actor is done and its
+	 * ring is empty.
+	 */
+	private void learn()
+	{
+		int [] batch = new int[BATCH_RECORDS*TransitionRing.RECORD_INTS];
+		long sinceSnapshot = 0;
+		
+		while (true)
+		{
+			//read before draining so records written just before an actor finished are not missed
+			boolean actorsDone = actorsRunning.get() == 0;
+			int drained = 0;
+			
+			for (TransitionRing ring : rings)
+			{
+				int records = ring.drain(batch, BATCH_RECORDS);
+				for (int i = 0; i < records; i++)
+				{
+					int base = i*TransitionRing.RECORD_INTS;
+					if (batch[base] == END_OF_GAME)
+					{
+						Driver.recordTrainingGame(batch[base+2]);
+						continue;
+					}
+					
+					if (batch[base+3] == NO_LOSS)
+						Driver.learnTransitionWithoutLoss(batch[base], batch[base+1], batch[base+2], true);
+					else
+						Driver.learnTransition(batch[base], batch[base+1], batch[base+2], batch[base+3], true);
+				}
+				
+				drained += records;
+				sinceSnapshot += records;
+			}
+			
+			if (sinceSnapshot >= snapshotInterval)
+			{
+				publish();
+				sinceSnapshot = 0;
+			}
+			
+			if (drained == 0)
+			{
+				if (actorsDone)
+					return;
+				LockSupport.parkNanos(20000);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Publish a copy of the current Q-table to the actors.
+	 */
+	private void publish()
+	{
+		policy = new ArrayQTable(Driver.scoreBoard);
+	}
+	
+	
+	/**
+	 * Body of an actor.  Plays games until the games to play run out.
+	 * 
+	 * @param random		randomizer of the exploration
+	 * @param bounces		randomizer of the bounces, null to seed every bounce with the current time
+	 */
+	private void act(final TransitionRing ring, final Random random, Random bounces)
+	{
+		PaddleAgent agent = new PaddleAgent()
+		{
+			@Override
+			public int chooseAction(int stateRow, DiscreteState state)
+			{
+				return exploration.chooseAction(policy, stateRow, random);
+			}
+			
+			@Override
+			public void learn(int previousState, int previousOption, int reward, int currentState)
+			{
+				put(ring, previousState, previousOption, reward, currentState);
+			}
+			
+			@Override
+			public void learnWithoutLoss(int previousState, int previousOption, int reward)
+			{
+				put(ring, previousState, previousOption, reward, NO_LOSS);
+			}
+		};
+		
+		while (gamesLeft.getAndDecrement() > 0)
+		{
+			GameSession game = loop.newGame(false, bounces);
+			loop.play(game, agent);
+			put(ring, END_OF_GAME, 0, game.bouncesThisGame(), 0);
+		}
+	}
+	
+	
+	/**
+	 * Add a record, waiting for the learner while the ring is full.
+	 */
+	private static void put(TransitionRing ring, int previousState, int previousOption, int reward, int currentState)
+	{
+		while (!ring.offer(previousState, previousOption, reward, currentState))
+			Thread.yield();
+	}
+}
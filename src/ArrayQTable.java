@@ -0,0 +1,97 @@
+
+/**
+ * Q-table in two flat primitive arrays, row-major by state and action.  Cheap to copy whole,
+ * which PopulationTrainer does whenever an agent takes over the table of a stronger one and
+ * ActorLearnerTrainer does for every policy it publishes.
+ */
+public class ArrayQTable implements QTable 
+{
+	private double [] utilities;
+	private int [] attempts;
+	
+	
+	/**
+	 * Create a table with every utility and attempt count at 0.
+	 * 
+	 * @param rows		number of rows, including the terminal state
+	 */
+	public ArrayQTable(int rows)
+	{
+		utilities = new double[rows*3];
+		attempts = new int[rows*3];
+	}
+	
+	
+	/**
+	 * Create a copy of any table, e.g. a frozen one that other threads can read while the
+	 * original keeps changing.
+	 * 
+	 * @param other		table to copy
+	 */
+	public ArrayQTable(QTable other)
+	{
+		this(other.rows());
+		for (int row = 0; row < other.rows(); row++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				utilities[row*3 + i] = other.utility(row, i);
+				attempts[row*3 + i] = other.attempts(row, i);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Overwrite the utilities and attempts with those of another table of the same size.
+	 * 
+	 * @param other		table to copy
+	 */
+	public void copyFrom(ArrayQTable other)
+	{
+		System.arraycopy(other.utilities, 0, utilities, 0, utilities.length);
+		System.arraycopy(other.attempts, 0, attempts, 0, attempts.length);
+	}
+	
+	
+	@Override
+	public int rows()
+	{
+		return utilities.length/3;
+	}
+	
+	
+	@Override
+	public double utility(int stateRow, int action)
+	{
+		return utilities[stateRow*3 + action];
+	}
+	
+	
+	@Override
+	public void setUtility(int stateRow, int action, double value)
+	{
+		utilities[stateRow*3 + action] = value;
+	}
+	
+	
+	@Override
+	public int attempts(int stateRow, int action)
+	{
+		return attempts[stateRow*3 + action];
+	}
+	
+	
+	@Override
+	public int addAttempt(int stateRow, int action)
+	{
+		return ++attempts[stateRow*3 + action];
+	}
+	
+	
+	@Override
+	public void setAttempts(int stateRow, int action, int attempts)
+	{
+		this.attempts[stateRow*3 + action] = attempts;
+	}
+}
@@ -0,0 +1,49 @@
+import jdk.jfr.*;
+
+
+/**
+ * JFR event for a ball missed by a paddle, ending the game.  Disabled unless a recording enables it.
+ */
+@Name("pong.BallMiss")
+@Label("Ball Miss")
+@Category({"Pong", "Games"})
+@Description("Ball missed by a paddle, ending the game")
+@Enabled(false)
+@StackTrace(false)
+public class BallMissEvent extends Event 
+{
+	@Label("Paddle")
+	public String paddle;
+	
+	@Label("Ball Y")
+	public double ballY;
+	
+	@Label("Paddle Position")
+	public double paddlePosition;
+	
+	@Label("Bounces")
+	@Description("Bounces of the game")
+	public int bounces;
+	
+	
+	/**
+	 * Commit an event if the event type is enabled.
+	 * 
+	 * @param paddle			"right" or "left"
+	 * @param ballY				y-position of the ball
+	 * @param paddlePosition	bottom of the paddle
+	 * @param bounces			bounces of the game
+	 */
+	public static void emit(String paddle, double ballY, double paddlePosition, int bounces)
+	{
+		BallMissEvent event = new BallMissEvent();
+		if (!event.isEnabled())
+			return;
+		
+		event.paddle = paddle;
+		event.ballY = ballY;
+		event.paddlePosition = paddlePosition;
+		event.bounces = bounces;
+		event.commit();
+	}
+}
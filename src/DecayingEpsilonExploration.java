@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Epsilon-greedy with an epsilon decaying with the visits of each state,
+ * 
+ * 		epsilon(s) = max(floor, initial*halfLife/(halfLife + N(s)))
+ * 
+ * where N(s) are the attempts of all actions of the state.  Rarely seen states keep exploring
+ * while the common ones turn greedy, and the floor keeps revisiting actions whose utility
+ * may have gone stale.
+ */
+public class DecayingEpsilonExploration implements ExplorationStrategy 
+{
+	//defaults of the constructor without arguments, which Driver.configure uses
+	private static double DEFAULT_INITIAL = 1;
+	private static double DEFAULT_FLOOR = 0;
+	private static double DEFAULT_HALF_LIFE = 20;
+	
+	private double initial;
+	private double floor;
+	private double halfLife;
+	
+	
+	/**
+	 * Epsilon starting at 1, halved after 20 visits of a state and without a floor.
+	 */
+	public DecayingEpsilonExploration()
+	{
+		this(DEFAULT_INITIAL, DEFAULT_FLOOR, DEFAULT_HALF_LIFE);
+	}
+	
+	
+	/**
+	 * @param initial		epsilon of a state never visited
+	 * @param floor			lowest epsilon
+	 * @param halfLife		visits of a state after which its epsilon is halved
+	 */
+	public DecayingEpsilonExploration(double initial, double floor, double halfLife)
+	{
+		this.initial = initial;
+		this.floor = floor;
+		this.halfLife = halfLife;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return "epsilon " + initial + "/" + halfLife;
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+	}
+	
+	
+	@Override
+	public int chooseAction(QTable table, int stateRow, Random random)
+	{
+		int visits = table.attempts(stateRow, 0) + table.attempts(stateRow, 1) + table.attempts(stateRow, 2);
+		double epsilon = Math.max(floor, initial*halfLife/(halfLife + visits));
+		
+		if (random.nextDouble() < epsilon)
+			return random.nextInt(3);
+		
+		return Driver.greedyAction(table, stateRow);
+	}
+	
+	
+	@Override
+	public void actionProbabilities(QTable table, int stateRow, double [] probabilities)
+	{
+		int visits = table.attempts(stateRow, 0) + table.attempts(stateRow, 1) + table.attempts(stateRow, 2);
+		double epsilon = Math.max(floor, initial*halfLife/(halfLife + visits));
+		
+		Arrays.fill(probabilities, epsilon/3);
+		probabilities[Driver.greedyAction(table, stateRow)] += 1-epsilon;
+	}
+}
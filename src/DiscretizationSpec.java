@@ -0,0 +1,339 @@
+import java.util.Locale;
+
+
+/**
+ * Bins of each dimension of the discrete game state.
+ * 
+ * The ball row (y), ball column (x) and paddle position each have their own number of bins.
+ * A dimension is either split into equal bins, or at a sorted list of interior edges, given
+ * as fractions of the dimension in (0, 1).  Uneven edges put the table's rows where they
+ * matter, for example narrow columns close to the paddle at x = 1.  Y-velocities within the
+ * threshold of zero count as level.
+ * 
+ * Specs are written as space separated "dimension:bins" entries, where bins is a count of
+ * equal bins or a comma separated list of edges, e.g.
+ * 
+ * 		rows:12 columns:0.4,0.6,0.75,0.85,0.92,0.97 paddle:12 yvelocity:0.015
+ * 
+ * toString gives the same format, so a spec can be saved with a table and compared later.
+ */
+public class DiscretizationSpec
+{
+	//threshold of the original discretisation
+	private static final double DEFAULT_Y_VELOCITY_THRESHOLD = 0.015;
+	
+	private Axis rows;
+	private Axis columns;
+	private Axis paddles;
+	private double yVelocityThreshold;
+	
+	//bins of each dimension as doubles, set if no dimension has edges.  The state is looked up
+	//every step, so equal bins are computed here instead of through the axes, and kept as
+	//doubles so the lookup has no int to double conversion
+	private final boolean equalBins;
+	private final double rowBins;
+	private final double columnBins;
+	private final double paddleBins;
+	
+	
+	/**
+	 * Bins of one dimension.
+	 */
+	private static class Axis
+	{
+		private int bins;
+		
+		//interior edges in increasing order, null for equal bins
+		private double [] edges;
+		
+		private Axis(int bins)
+		{
+			if (bins < 1)
+				throw new IllegalArgumentException("Need at least one bin:  " + bins);
+			this.bins = bins;
+		}
+		
+		private Axis(double [] edges)
+		{
+			for (int i = 0; i < edges.length; i++)
+			{
+				if (!(edges[i] > 0 && edges[i] < 1) || (i > 0 && edges[i] <= edges[i-1]))
+					throw new IllegalArgumentException("Edges must increase within (0, 1)");
+			}
+			this.bins = edges.length+1;
+			this.edges = edges;
+		}
+		
+		/**
+		 * Bin of a position, clamped to the valid bins.
+		 */
+		private int bin(double position, double extent)
+		{
+			if (edges == null)
+			{
+				//same arithmetic as the original discretisation, so equal bins give the same states
+				int bin = (int) Math.floor(bins*position/extent);
+				if (bin < 0)
+					return 0;
+				return (bin > bins-1) ? bins-1 : bin;
+			}
+			
+			//number of edges at or below the position
+			double fraction = position/extent;
+			int low = 0;
+			int high = edges.length;
+			while (low < high)
+			{
+				int middle = (low+high) >>> 1;
+				if (edges[middle] <= fraction)
+					low = middle+1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+		
+		/**
+		 * True if the bins are the same when the dimension is flipped.
+		 */
+		private boolean isSymmetric()
+		{
+			if (edges == null)
+				return true;
+			
+			for (int i = 0; i < edges.length; i++)
+			{
+				if (Math.abs(edges[i] + edges[edges.length-1-i] - 1) > 1e-9)
+					return false;
+			}
+			return true;
+		}
+		
+		@Override
+		public String toString()
+		{
+			if (edges == null)
+				return Integer.toString(bins);
+			
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < edges.length; i++)
+			{
+				if (i > 0)
+					text.append(',');
+				text.append(edges[i]);
+			}
+			return text.toString();
+		}
+		
+		private static Axis parse(String text)
+		{
+			if (!text.contains(",") && !text.contains("."))
+				return new Axis(Integer.parseInt(text));
+			
+			String [] fields = text.split(",");
+			double [] edges = new double[fields.length];
+			for (int i = 0; i < fields.length; i++)
+				edges[i] = Double.parseDouble(fields[i]);
+			return new Axis(edges);
+		}
+	}
+	
+	
+	private DiscretizationSpec(Axis rows, Axis columns, Axis paddles, double yVelocityThreshold)
+	{
+		this.rows = rows;
+		this.columns = columns;
+		this.paddles = paddles;
+		this.yVelocityThreshold = yVelocityThreshold;
+		
+		this.equalBins = rows.edges == null && columns.edges == null && paddles.edges == null;
+		this.rowBins = rows.bins;
+		this.columnBins = columns.bins;
+		this.paddleBins = paddles.bins;
+	}
+	
+	
+	/**
+	 * The original discretisation, the same number of equal bins in every dimension.
+	 * 
+	 * @param maxDiscrete		number of discrete row/column/paddle positions
+	 * @return					the spec
+	 */
+	public static DiscretizationSpec uniform(int maxDiscrete)
+	{
+		Axis axis = new Axis(maxDiscrete);
+		return new DiscretizationSpec(axis, axis, axis, DEFAULT_Y_VELOCITY_THRESHOLD);
+	}
+	
+	
+	/**
+	 * Read a spec in the format of the class documentation.
+	 * 
+	 * @param text				spec to read
+	 * @param defaultBins		equal bins of the dimensions the spec leaves out
+	 * @return					the spec
+	 * @throws IllegalArgumentException		if the spec cannot be read
+	 */
+	public static DiscretizationSpec parse(String text, int defaultBins)
+	{
+		Axis rows = new Axis(defaultBins);
+		Axis columns = rows;
+		Axis paddles = rows;
+		double threshold = DEFAULT_Y_VELOCITY_THRESHOLD;
+		
+		for (String entry : text.trim().split("\\s+"))
+		{
+			int colon = entry.indexOf(':');
+			if (colon < 0)
+				throw new IllegalArgumentException("Expected dimension:bins in discretisation spec:  " + entry);
+			
+			String dimension = entry.substring(0, colon).toLowerCase(Locale.ROOT);
+			String value = entry.substring(colon+1);
+			if (dimension.equals("rows"))
+				rows = Axis.parse(value);
+			else if (dimension.equals("columns"))
+				columns = Axis.parse(value);
+			else if (dimension.equals("paddle"))
+				paddles = Axis.parse(value);
+			else if (dimension.equals("yvelocity"))
+				threshold = Double.parseDouble(value);
+			else
+				throw new IllegalArgumentException("Unknown dimension in discretisation spec:  " + dimension);
+		}
+		
+		return new DiscretizationSpec(rows, columns, paddles, threshold);
+	}
+	
+	
+	/**
+	 * @return		number of ball row bins (y)
+	 */
+	public int rows()
+	{
+		return rows.bins;
+	}
+	
+	
+	/**
+	 * @return		number of ball column bins (x)
+	 */
+	public int columns()
+	{
+		return columns.bins;
+	}
+	
+	
+	/**
+	 * @return		number of paddle position bins
+	 */
+	public int paddles()
+	{
+		return paddles.bins;
+	}
+	
+	
+	/**
+	 * @param yPosition		ball y-position in [0, 1]
+	 * @return				discrete row
+	 */
+	public int row(double yPosition)
+	{
+		if (equalBins)
+			return equalBin(rowBins*yPosition, rowBins);
+		return rows.bin(yPosition, 1);
+	}
+	
+	
+	/**
+	 * @param xPosition		ball x-position in [0, 1], paddle plane at 1
+	 * @return				discrete column
+	 */
+	public int column(double xPosition)
+	{
+		if (equalBins)
+			return equalBin(columnBins*xPosition, columnBins);
+		return columns.bin(xPosition, 1);
+	}
+	
+	
+	/**
+	 * @param paddlePosition	bottom of the paddle
+	 * @param travel			range the bottom of the paddle moves over
+	 * @return					discrete paddle position
+	 */
+	public int paddle(double paddlePosition, double travel)
+	{
+		if (equalBins)
+			return equalBin(paddleBins*paddlePosition/travel, paddleBins);
+		return paddles.bin(paddlePosition, travel);
+	}
+	
+	
+	/**
+	 * Bin of a scaled position with equal bins, clamped to the valid bins.  Gives the bins of the
+	 * original floor arithmetic: truncation only differs from floor below 0, which clamps to 0.
+	 * 
+	 * @param scaled		position times the number of bins
+	 * @param bins			number of bins
+	 * @return				bin
+	 */
+	private static int equalBin(double scaled, double bins)
+	{
+		if (scaled < 1)
+			return 0;
+		return (scaled >= bins) ? (int) bins-1 : (int) scaled;
+	}
+	
+	
+	/**
+	 * @param yVelocity		ball y-velocity
+	 * @return				-1 for upwards, +1 for downwards and 0 within the threshold of level
+	 */
+	public int yVelocity(double yVelocity)
+	{
+		if (Math.abs(yVelocity) < yVelocityThreshold)
+			return 0;
+		return (yVelocity <= -yVelocityThreshold) ? -1 : 1;
+	}
+	
+	
+	/**
+	 * @return		true if every dimension has equal bins and the original velocity threshold
+	 */
+	public boolean isUniform()
+	{
+		return rows.edges == null && columns.edges == null && paddles.edges == null
+				&& rows.bins == columns.bins && rows.bins == paddles.bins
+				&& yVelocityThreshold == DEFAULT_Y_VELOCITY_THRESHOLD;
+	}
+	
+	
+	/**
+	 * @return		true if flipping the board upside down maps row and paddle bins onto each other
+	 */
+	public boolean isMirrorSymmetric()
+	{
+		return rows.isSymmetric() && paddles.isSymmetric();
+	}
+	
+	
+	@Override
+	public String toString()
+	{
+		return "rows:" + rows + " columns:" + columns + " paddle:" + paddles + " yvelocity:" + yVelocityThreshold;
+	}
+	
+	
+	@Override
+	public boolean equals(Object other)
+	{
+		return (other instanceof DiscretizationSpec) && toString().equals(other.toString());
+	}
+	
+	
+	@Override
+	public int hashCode()
+	{
+		return toString().hashCode();
+	}
+}
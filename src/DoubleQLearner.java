@@ -0,0 +1,116 @@
+/**
+ * Double Q-learning with two primitive tables A and B.
+ * 
+ * Each update picks one table at random, selects the best next action with it and evaluates
+ * that action with the other one, which removes the overestimation of taking a max over noisy
+ * utilities.  The average of both tables is written back to Driver.scoreBoard, so action
+ * selection, snapshots and checkpoints see the combined estimate.  That write-back would
+ * overwrite the updates of other processes, so Double Q-learning does not train into a
+ * shared table.
+ * 
+ * The table to update is drawn from Driver.getRandom, so seeded runs are reproducible.
+ */
+public class DoubleQLearner implements Learner 
+{
+	private double [] tableA = new double[0];
+	private double [] tableB = new double[0];
+	
+	
+	@Override
+	public String name()
+	{
+		return "Double Q-learning";
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+		tableA = new double[rows*3];
+		tableB = new double[rows*3];
+	}
+	
+	
+	@Override
+	public boolean canShareTable()
+	{
+		return false;
+	}
+	
+	
+	@Override
+	public void startFrom(QTable table)
+	{
+		//both estimates start from the loaded utilities, so the first updates do not average them with zeros
+		for (int row = 0; row < table.rows(); row++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				tableA[row*3 + i] = table.utility(row, i);
+				tableB[row*3 + i] = table.utility(row, i);
+			}
+		}
+	}
+	
+	
+	@Override
+	public int chooseAction(int stateRow, boolean trainingMode)
+	{
+		return Driver.findBestAction(stateRow, trainingMode);
+	}
+	
+	
+	@Override
+	public void update(int previousState, int previousOption, double reward, int currentState, boolean trainingMode)
+	{
+		boolean updateA = Driver.getRandom().nextBoolean();
+		double [] selecting = updateA ? tableA : tableB;
+		double [] evaluating = updateA ? tableB : tableA;
+		
+		//the terminal state is valued like in Q-learning
+		double currentVal;
+		if (Driver.isTerminalState(currentState))
+			currentVal = Driver.findGreatestUtil(currentState);
+		else
+			currentVal = evaluating[currentState*3 + bestAction(selecting, currentState)];
+		
+		int cell = previousState*3 + previousOption;
+		selecting[cell] = Driver.temporalDifference(reward, currentVal, selecting[cell], 
+				Driver.scoreBoard.attempts(previousState, previousOption));
+		
+		Driver.scoreBoard.setUtility(previousState, previousOption, (tableA[cell] + tableB[cell])/2);
+	}
+	
+	
+	@Override
+	public void updateWithoutLoss(int previousState, int previousOption, double reward, boolean trainingMode)
+	{
+		double [] selecting = Driver.getRandom().nextBoolean() ? tableA : tableB;
+		
+		int cell = previousState*3 + previousOption;
+		selecting[cell] = Driver.temporalDifference(reward, 0, selecting[cell], 
+				Driver.scoreBoard.attempts(previousState, previousOption));
+		
+		Driver.scoreBoard.setUtility(previousState, previousOption, (tableA[cell] + tableB[cell])/2);
+	}
+	
+	
+	/**
+	 * Greedy action of a state in one of the tables, with the tie-breaking of Driver.greedyAction.
+	 */
+	private static int bestAction(double [] table, int stateRow)
+	{
+		double max = Double.MIN_VALUE;
+		int idx = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			if (table[stateRow*3+i] > max)
+			{
+				max = table[stateRow*3+i];
+				idx = i;
+			}
+		}
+		
+		return idx;
+	}
+}
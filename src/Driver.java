@@ -1,5 +1,17 @@
 
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
 
 
 public class Driver 
@@ -15,6 +27,17 @@ public class Driver
 	private static boolean ENABLE_VISUAL = true;
 	private static int VISUAL_TRIALS = 50;
 	private static int SECONDS_BETWEEN_GAMES = 2;
+	
+	/*
+	 * Offscreen recording of test games, works without a display.
+	 * 
+	 * @RECORD_OUTPUT	- ".gif" file for an animated GIF, otherwise a directory for a PNG sequence.
+	 * 					  null disables recording.
+	 * @RECORD_GAMES	- number of test games recorded
+	 * 
+	 * */
+	private static String RECORD_OUTPUT = null;
+	private static int RECORD_GAMES = 1;
 
 	
 	/**
@@ -22,6 +45,55 @@ public class Driver
 	 */
 	private static int MAX_DISCRETE = 12;
 	
+	/**
+	 * Bins of each dimension of the discrete state in the format of DiscretizationSpec, e.g.
+	 * "rows:12 columns:0.4,0.6,0.75,0.85,0.92,0.97 paddle:12".  Dimensions left out get
+	 * MAX_DISCRETE equal bins, null gives MAX_DISCRETE equal bins in every dimension.
+	 */
+	private static String DISCRETIZATION = null;
+	
+	/**
+	 * Self-play with a second paddle replacing the left wall.  Both paddles learn into the same
+	 * Q-table, the left one through the mirrored state of GameSession.closestDiscreteLeft.
+	 */
+	private static boolean SELF_PLAY = false;
+	
+	/**
+	 * Ball physics, see GameSession.setPhysics.
+	 * @EXACT_COLLISIONS - resolve wall and paddle collisions at their time of impact within a step,
+	 * 					  false keeps the original stepping
+	 * @TIMESTEP - time per step as a multiple of the original step, with exact collisions only.
+	 * 			  Ball and paddle speeds per unit of time stay the same, but the paddle moves
+	 * 			  TIMESTEP times further per decision and the table gets that many times fewer
+	 * 			  updates.  The agent learns a coarser game, and its test averages differ from
+	 * 			  those at 1 by more than the noise, up or down.
+	 */
+	private static boolean EXACT_COLLISIONS = false;
+	private static double TIMESTEP = 1;
+	
+	/**
+	 * Action repeat.
+	 * @ACTION_REPEAT - number of steps each chosen action is applied for before the next decision and update
+	 * @REPEAT_WHILE_UNCHANGED - keep repeating past ACTION_REPEAT while the discrete state is unchanged
+	 * @MAX_ACTION_REPEAT - cap on the steps of one decision with REPEAT_WHILE_UNCHANGED
+	 */
+	private static int ACTION_REPEAT = 1;
+	private static boolean REPEAT_WHILE_UNCHANGED = false;
+	private static int MAX_ACTION_REPEAT = 16;
+	
+	/**
+	 * Order in which discrete states are laid out in the rows of the Q-table.
+	 * "row-major", "velocity-major" or "morton", see StateLayout.forName.
+	 */
+	private static String STATE_LAYOUT = "row-major";
+	
+	/**
+	 * Fold each state and its upside-down mirror image onto one row of the Q-table, see
+	 * MirrorFoldedLayout.  Halves the table and trains both images with every update.
+	 * Needs a discretisation with symmetric row and paddle bins.
+	 */
+	private static boolean MIRROR_FOLDING = false;
+	
 	
 	/**
 	 * Agent parameters.
@@ -40,6 +112,18 @@ public class Driver
 	private static int LEARN_RATE = 100000;
 	private static int MAX_ATTEMPT_EXPLORE = 20;
 	
+	/**
+	 * Update rule and action selection of the agent.  QLearner, SarsaLearner, ExpectedSarsaLearner
+	 * or DoubleQLearner.
+	 */
+	private static Learner LEARNER = new QLearner();
+	
+	/**
+	 * Action selection while training.  ThresholdExploration explores every action MAX_ATTEMPT_EXPLORE
+	 * times and is greedy afterwards, DecayingEpsilonExploration and Ucb1Exploration keep exploring.
+	 */
+	private static ExplorationStrategy EXPLORATION = new ThresholdExploration();
+	
 	private static int BIG_REWARD = 1;
 	private static int BIG_PUNISHMENT = -1;
 	
@@ -50,6 +134,119 @@ public class Driver
 	private static int TRAINING_GAMES = 200000;
 	private static int TESTING_GAMES = 1000;
 	
+	/**
+	 * Learning curve streamed during training.
+	 * @CURVE_OUTPUT - file for the learning curve, ".json"/".jsonl" for JSON lines and CSV otherwise.
+	 * 				   null disables the learning curve.
+	 * @CURVE_INTERVAL - number of training games between records
+	 * @CURVE_WINDOW - number of most recent training games the rolling average, p50 and max bounces
+	 * 				   of each record are taken over.  TD error and games/sec cover the games since
+	 * 				   the previous record.
+	 */
+	private static String CURVE_OUTPUT = null;
+	private static int CURVE_INTERVAL = 1000;
+	private static int CURVE_WINDOW = 10000;
+	
+	/**
+	 * Visitation heatmaps sampled from the attempts of the Q-table during training, see VisitationStats.
+	 * @VISITS_OUTPUT - directory receiving visits_<games>.csv and visits_<games>.png, null disables sampling
+	 * @VISITS_INTERVAL - number of training games between samples
+	 */
+	private static String VISITS_OUTPUT = null;
+	private static int VISITS_INTERVAL = 10000;
+	
+	/**
+	 * Greedy evaluation of Q-table snapshots on a background thread during training.
+	 * @EVAL_INTERVAL - number of training games between snapshots, 0 disables the evaluation
+	 * @EVAL_GAMES - number of greedy games played on each snapshot
+	 * @EVAL_TARGET_AVERAGE - stop training once a snapshot reaches this average, 0 to always finish training
+	 */
+	private static int EVAL_INTERVAL = 0;
+	private static int EVAL_GAMES = 200;
+	private static double EVAL_TARGET_AVERAGE = 0;
+	
+	/**
+	 * Q-table checkpoints.
+	 * @CHECKPOINT_INPUT - checkpoint to continue training from, null to start from an empty table
+	 * @CHECKPOINT_OUTPUT - file to save the Q-table to after training, null to not save it
+	 */
+	private static String CHECKPOINT_INPUT = null;
+	private static String CHECKPOINT_OUTPUT = null;
+	
+	/**
+	 * File of a memory-mapped Q-table shared by all training processes on this host that use the
+	 * same file, discretisation and layout.  null keeps the Q-table private to this process.
+	 * Not with learners keeping estimates of their own, see Learner.canShareTable.
+	 */
+	private static String SHARED_TABLE = null;
+	
+	/**
+	 * Keep the private Q-table in two primitive arrays, see ArrayQTable, instead of an object per
+	 * utility, see HeapQTable.  Only then does STATE_LAYOUT decide where the utilities of
+	 * neighbouring states lie in memory.  Ignored with SHARED_TABLE.
+	 */
+	private static boolean PRIMITIVE_TABLE = false;
+	
+	/**
+	 * Actor-learner training, see ActorLearnerTrainer.
+	 * @ACTOR_THREADS - number of threads playing training games for a single learner thread, 0 trains
+	 * 				   with playGame on the main thread.  The learning curve, snapshot evaluation
+	 * 				   and visitation samples are only recorded when training on the main thread.
+	 * @SNAPSHOT_INTERVAL - number of transitions learned between policies published to the actors
+	 */
+	private static int ACTOR_THREADS = 0;
+	private static int SNAPSHOT_INTERVAL = 2000;
+	
+	/**
+	 * Population-based training, see PopulationTrainer.  The best agent's table becomes the Q-table.
+	 * @POPULATION_SIZE - number of agents training in parallel with their own tables and hyperparameters,
+	 * 					 0 trains a single agent.  Each agent plays all of the training games.
+	 * @POPULATION_READY_GAMES - training games of each agent between evaluations
+	 * @POPULATION_EVAL_GAMES - greedy games of each evaluation
+	 * @POPULATION_LINEAGE - CSV file of every agent's score, hyperparameters and copies by generation,
+	 * 						null for none
+	 */
+	private static int POPULATION_SIZE = 0;
+	private static int POPULATION_READY_GAMES = 10000;
+	private static int POPULATION_EVAL_GAMES = 500;
+	private static String POPULATION_LINEAGE = "lineage.csv";
+	
+	/**
+	 * Measure allocated bytes and CPU time of every game and report them per phase at the end of the run.
+	 */
+	private static boolean PROFILE_EPISODES = false;
+	
+	/**
+	 * One in this many Q-table updates is offered to JFR as a pong.QUpdate event.  Like the other
+	 * pong events it is only recorded when a flight recording enables it, see jfr/pong.jfc.
+	 */
+	private static int JFR_Q_UPDATE_SAMPLING = 1000;
+	
+	/**
+	 * True while a flight recording runs, whether started with the JVM, e.g. with
+	 * -XX:StartFlightRecording, or later with jcmd JFR.start.  Kept up to date by a listener of
+	 * the flight recorder, so without a recording the pong events cost a field read on the hot
+	 * path.  Which of them are recorded is up to the recording's settings, see jfr/pong.jfc.
+	 */
+	public static volatile boolean jfrRecording = watchRecordings();
+	
+	/**
+	 * Sequential evaluation, see SequentialEvaluation.  Used instead of the fixed TESTING_GAMES when
+	 * EVAL_PRECISION is positive or EVAL_BASELINE is set, and plays the frozen greedy policy.
+	 * A baseline that cannot be loaded fails the run.
+	 * @EVAL_PRECISION - stop testing once the average bounces are known to within this many bounces.
+	 * 					With a baseline, differences below it count as no difference.
+	 * @EVAL_CONFIDENCE - confidence level of the intervals
+	 * @EVAL_BATCH_GAMES - games played between looks at the result
+	 * @EVAL_MAX_GAMES - games per policy after which testing stops regardless
+	 * @EVAL_BASELINE - checkpoint of a policy to compare the trained one against, null for none
+	 */
+	private static double EVAL_PRECISION = 0;
+	private static double EVAL_CONFIDENCE = 0.95;
+	private static int EVAL_BATCH_GAMES = 500;
+	private static int EVAL_MAX_GAMES = 100000;
+	private static String EVAL_BASELINE = null;
+	
 	
 	
 	/**
@@ -59,14 +256,39 @@ public class Driver
 	private static int maxFreqTraining = 0;
 	private static int maxFreqTesting = 0;
 	private static int cumulative = 0;
+	
+	//bounces of the left paddle in the test games of self-play, reported next to the average
+	private static long leftCumulative = 0;
 	private static int belowThreshold = 0;
 	
+	//sum and count of absolute TD errors since the last learning curve record
+	private static double tdErrorSum = 0;
+	private static long tdErrorCount = 0;
+	
 	//randomizer for selecting states that need further exploration
 	private static Random myRandom = new Random();
 	
+	//randomizer of the bounces of the games played on the main thread, null to seed every bounce
+	//with the current time
+	private static Random bounceRandom = null;
+	
+	//seed of the bounces and generators handed out since, see newBounceRandom.  null if unseeded
+	private static Long bounceSeed = null;
+	private static long bounceStreams = 0;
+	
+	//time steps simulated in all games played so far
+	private static long stepsPlayed = 0;
+	
 	//constant for total number of representative states, including the terminal state of "game over"
 	private static int STATE_REP_SIZE;
 	
+	//discretisation and layout of the table, built from the settings by initializeTable
+	private static DiscretizationSpec discretization;
+	private static StateLayout stateLayout;
+	
+	//step loop of every game, with the self-play, action repeat and rewards of the settings
+	private static GameLoop gameLoop;
+	
 	//hash-map to convert integer in Q-state table into a valid current state
 	public static HashMap<Integer, DiscreteState> intToState = new HashMap<Integer, DiscreteState>();
 	
@@ -79,24 +301,47 @@ public class Driver
 	
 	
 	//Q-table referring to states and corresponding actions
-	public static UtilScore [][] scoreBoard = null;
+	public static QTable scoreBoard = null;
+	
+	//actions of each state attempted fewer than MAX_ATTEMPT_EXPLORE times
+	private static ExplorationMask exploreMask = null;
 	
 	//reference to game session object
 	public static GameSession myGame = null;
 	
+	//allocation and CPU profiler of the games, null unless PROFILE_EPISODES is set
+	private static EpisodeProfiler profiler = null;
+	
+	//updates left until the next one is offered as a JFR event
+	private static int qUpdateCountdown = 0;
+	
+	//phase of the last game played and its JFR event, null before the first game
+	private static RunPhase currentPhase = null;
+	private static PhaseEvent phaseEvent = null;
+	
+	//offscreen recorder of the games being played, null unless recording
+	private static FrameRecorder recorder = null;
+	
+	//values of the settings before the first call of configure, by setting name
+	private static Map<String, Object> defaultSettings = null;
+	
+	//the classes LEARNER and EXPLORATION may be set to by name, configure creates nothing else
+	private static final Class<?> [] STRATEGY_CLASSES = {QLearner.class, SarsaLearner.class, ExpectedSarsaLearner.class,
+			DoubleQLearner.class, ThresholdExploration.class, DecayingEpsilonExploration.class, Ucb1Exploration.class};
+	
 
 	
 	/**
 	 * Uses number of attempts of an action from a specific state to calculate the
 	 * alpha in TD algorithm
 	 * 
-	 * @param currentUtil current state/action pairing
+	 * @param attempts attempts of the current state/action pairing
 	 * @return alpha in TD algorithm
 	 */
-	public static double calculateLearnRate(UtilScore targetUtil)
+	public static double calculateLearnRate(int attempts)
 	{
 		double numerator = (double)(LEARN_RATE);
-		double denominator = (double)(LEARN_RATE-1+targetUtil.attempts);
+		double denominator = (double)(LEARN_RATE-1+attempts);
 		
 		return numerator/denominator;
 	}
@@ -106,26 +351,96 @@ public class Driver
 	 * 
 	 * @param reward		reward of action previously taken, given by main game loop
 	 * @param current		integer representing the current state 
-	 * @param pastUtil		use this to obtain utility of previous state/action pairing
+	 * @param pastState		row of the previous state
+	 * @param pastOption	action taken from the previous state
 	 * @return				new value in which to update the previous state/action pairing
 	 */
 	
-	public static double calculateNewUtility(double reward, int current, UtilScore pastUtil, boolean previouslyHit)
+	public static double calculateNewUtility(double reward, int current, int pastState, int pastOption, boolean previouslyHit)
 	{
 	
-		//calculate best current state/action utility, original previous state/action utility, and alpha(learnRate)
-		
-		double learnRate = calculateLearnRate(pastUtil);
-		double pastVal = pastUtil.utility;
+		//calculate best current state/action utility
 		double currentVal = findGreatestUtil(current);
 		
+		return temporalDifference(reward, currentVal, scoreBoard.utility(pastState, pastOption), 
+				scoreBoard.attempts(pastState, pastOption));
+	}
+	
+	
+	/**
+	 * Apply the TD formula to the utility of a state/action pair.  Shared by all learners
+	 * so they use the same alpha and discount.
+	 * 
+	 * @param reward		reward of action previously taken
+	 * @param currentVal	value of the current state to bootstrap from
+	 * @param pastVal		utility of the previous state/action pairing
+	 * @param pastAttempts	attempts of the previous state/action pairing
+	 * @return				new value in which to update the previous state/action pairing
+	 */
+	public static double temporalDifference(double reward, double currentVal, double pastVal, int pastAttempts)
+	{
+		double learnRate = calculateLearnRate(pastAttempts);
+		
 		//apply formula
-		double newVal = pastVal + learnRate*(reward+GAMMA*currentVal-pastVal);
+		double tdError = reward+GAMMA*currentVal-pastVal;
+		double newVal = pastVal + learnRate*tdError;
+		
+		tdErrorSum += Math.abs(tdError);
+		tdErrorCount++;
+		if (jfrRecording && --qUpdateCountdown <= 0)
+		{
+			qUpdateCountdown = JFR_Q_UPDATE_SAMPLING;
+			QUpdateEvent.emit(reward, tdError, learnRate, newVal);
+		}
 		
 		return newVal;
 	}
 	
 	
+	/**
+	 * Learn from a transition:  count the attempt and let the learner update the Q-table.  Used by
+	 * playGame and by the learner of ActorLearnerTrainer.
+	 * 
+	 * @param pastState		row of the state the action was taken from
+	 * @param pastOption	action taken
+	 * @param reward		reward of the action
+	 * @param current		row of the state the action led to, possibly the terminal state
+	 * @param trainingMode	if true, the policy is using the exploration/exploitation tradeoff
+	 */
+	public static void learnTransition(int pastState, int pastOption, double reward, int current, boolean trainingMode)
+	{
+		//the terminal state is worth the loss of every action
+		if (isTerminalState(current))
+		{
+			for (int i = 0; i < 3; i++)
+				scoreBoard.setUtility(current, i, -1);
+		}
+		
+		int attempts = scoreBoard.addAttempt(pastState, pastOption);
+		exploreMask.recordAttempt(pastState, pastOption, attempts);
+		
+		LEARNER.update(pastState, pastOption, reward, current, trainingMode);
+	}
+	
+	
+	/**
+	 * Learn from the last action of a paddle whose game was ended by the other paddle missing in
+	 * self-play:  count the attempt and let the learner update the Q-table without a loss.
+	 * 
+	 * @param pastState		row of the state the action was taken from
+	 * @param pastOption	action taken
+	 * @param reward		reward of the action
+	 * @param trainingMode	if true, the policy is using the exploration/exploitation tradeoff
+	 */
+	public static void learnTransitionWithoutLoss(int pastState, int pastOption, double reward, boolean trainingMode)
+	{
+		int attempts = scoreBoard.addAttempt(pastState, pastOption);
+		exploreMask.recordAttempt(pastState, pastOption, attempts);
+		
+		LEARNER.updateWithoutLoss(pastState, pastOption, reward, trainingMode);
+	}
+	
+	
 	/**
 	 * Look at a given state index of the table. 
 	 * Choose greatest utility in that row of the table.
@@ -138,8 +453,8 @@ public class Driver
 		double max = Double.MIN_VALUE;
 		for(int i = 0; i < 3; i++)
 		{
-			if(scoreBoard[stateRow][i].utility > max)
-				max = scoreBoard[stateRow][i].utility;
+			if(scoreBoard.utility(stateRow, i) > max)
+				max = scoreBoard.utility(stateRow, i);
 		}
 		
 		return max;
@@ -153,9 +468,8 @@ public class Driver
 	 * 1 - paddle moves down 0.04 units.
 	 * 2 - paddle stays where it is.
 	 * 
-	 * If any of the three actions do not meet the exploration threshold, pick amongst the actions that are below
-	 * the threshold randomly.
-	 * Otherwise, try the action with maximum utility thus far.
+	 * In training mode the exploration strategy picks the action, by default amongst the actions that
+	 * are below the exploration threshold randomly, and otherwise the action with maximum utility thus far.
 	 * 
 	 * If it is not in training mode, then it will just use exploitation.
 	 * 
@@ -165,46 +479,57 @@ public class Driver
 	 * @return					action from state index row that would be best to take
 	 */
 	public static int findBestAction(int stateRow, boolean trainingMode)
+	{
+		if (trainingMode)
+			return EXPLORATION.chooseAction(scoreBoard, stateRow, myRandom);
+
+		return greedyAction(scoreBoard, stateRow);
+	}
+	
+	
+	/**
+	 * Probabilities with which findBestAction picks each action from a state.
+	 * 
+	 * @param stateRow			row of table best representing current game state
+	 * @param trainingMode		if true, the probabilities of the exploration strategy, otherwise
+	 * 							all of it on the action with max utility
+	 * @param probabilities		filled with the probability of each action
+	 */
+	public static void actionProbabilities(int stateRow, boolean trainingMode, double [] probabilities)
+	{
+		if (trainingMode)
+		{
+			EXPLORATION.actionProbabilities(scoreBoard, stateRow, probabilities);
+			return;
+		}
+		
+		Arrays.fill(probabilities, 0);
+		probabilities[greedyAction(scoreBoard, stateRow)] = 1;
+	}
+	
+	
+	/**
+	 * Pick the action with maximum utility in a row of the table.  Ties go to the lowest action.
+	 * 
+	 * @param table			Q-table to look in
+	 * @param stateRow			row of table representing the state
+	 * @return					action with maximum utility
+	 */
+	public static int greedyAction(QTable table, int stateRow)
 	{
 		double max = Double.MIN_VALUE;
 		int idx = 0;
 		
-		if (trainingMode)
-		{
-			if(numberBelowExploreThreshold(stateRow)> 0)
-			{
-				return randomlyChooseAction(stateRow);
-			}
-			else
+		for(int i = 0; i < 3; i++)
+		{	
+			double utility = table.utility(stateRow, i);
+			if(utility > max)
 			{
-				for(int i = 0; i < 3; i++)
-				{	
-					
-					if(scoreBoard[stateRow][i].utility > max)
-					{
-						max = scoreBoard[stateRow][i].utility;
-						idx = i;
-					}
-				}
-			}
-
-				
-		}
-		else
-		{
-			for(int i = 0; i < 3; i++)
-			{	
-				
-				if(scoreBoard[stateRow][i].utility > max)
-				{
-					max = scoreBoard[stateRow][i].utility;
-					idx = i;
-				}
+				max = utility;
+				idx = i;
 			}
 		}
-
-
-
+		
 		return idx;
 	}
 	
@@ -225,19 +550,20 @@ public class Driver
 	 * Main function.
 	 * @param args
 	 * @throws InterruptedException 
+	 * @throws IOException 			if the input checkpoint or the baseline cannot be used
 	 */
-	public static void main(String [] args) throws InterruptedException
+	public static void main(String [] args) throws InterruptedException, IOException
 	{
 			
 		
 		//start time
 		double startTime = System.currentTimeMillis();
 		
-		//populate core Q-table for state/action pairs
-		populateHashmaps();
+		if (PROFILE_EPISODES)
+			profiler = new EpisodeProfiler();
 		
-		//get # of states
-		STATE_REP_SIZE = intToState.size()+1;
+		//populate core Q-table for state/action pairs
+		initializeTable();
 		
 		//display your parameters
 		displayParameters();
@@ -245,41 +571,72 @@ public class Driver
 		//display your game max speed constraints
 		GameSession.printMaxSpeeds();
 		
-		//initialize Q-table
-		scoreBoard = new UtilScore[STATE_REP_SIZE][3];
+		if (CHECKPOINT_INPUT != null)
+			loadCheckpoint(CHECKPOINT_INPUT);
 		
-		for(int a = 0; a < STATE_REP_SIZE; a++)
-		{
-			for(int b = 0; b < 3; b++)
-				scoreBoard[a][b] = new UtilScore();
-		}
+		//a baseline that cannot be used fails the run before training
+		if (EVAL_BASELINE != null)
+			readCheckpoint(EVAL_BASELINE);
 		
 		
 		//train
 		trainGames();
 		
-		
-		for (int i = 0; i < STATE_REP_SIZE-1; i++)
+		if (CHECKPOINT_OUTPUT != null)
 		{
-			belowThreshold += numberBelowExploreThreshold(i);
+			try
+			{
+				saveCheckpoint(CHECKPOINT_OUTPUT);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Could not save checkpoint " + CHECKPOINT_OUTPUT + ":  " + e.getMessage());
+			}
 		}
 		
+		
+		belowThreshold = exploreMask.underExplored();
+		
+		if (VISITS_OUTPUT != null)
+			System.out.println("Visitation:  " + new VisitationStats(scoreBoard, intToState, discretization, MAX_ATTEMPT_EXPLORE).summary());
+		
 
 		//test
-		testGames(false, TESTING_GAMES);
-		displayResults(TESTING_GAMES);
+		if (EVAL_PRECISION > 0 || EVAL_BASELINE != null)
+			displayResults(evaluateSequentially());
+		else
+		{
+			testGames(false, TESTING_GAMES);
+			displayResults(TESTING_GAMES);
+		}
 		
 		double endTime = System.currentTimeMillis();
 		double minutes = (endTime-startTime)/60000;
 		
 		System.out.println("Program duration:  " + minutes);
 		
+		if (RECORD_OUTPUT != null)
+			recordGames(RECORD_OUTPUT, RECORD_GAMES);
 		
-		System.out.println("\n\n");
-		testGames(ENABLE_VISUAL, VISUAL_TRIALS);
 		
+		//the GUI needs a display, without one the visual trials are skipped
 		System.out.println("\n\n");
-		displayResults(VISUAL_TRIALS);
+		if (ENABLE_VISUAL && GraphicsEnvironment.isHeadless())
+			System.out.println("No display, skipping the visual trials");
+		else
+		{
+			testGames(ENABLE_VISUAL, VISUAL_TRIALS);
+			
+			System.out.println("\n\n");
+			displayResults(VISUAL_TRIALS);
+		}
+		endPhase();
+		
+		if (profiler != null)
+			profiler.printReport();
+		
+		if (scoreBoard instanceof MappedQTable)
+			((MappedQTable) scoreBoard).close();
 		
 		
 	}
@@ -291,196 +648,629 @@ public class Driver
 	 *
 	 * @param trainingMode		determines if you use the exploration/exploitation tradeoff
 	 * @param displayVisual		show the GUI
-	 * @throws InterruptedException 
+	 * @throws InterruptedException		if interrupted while showing or recording the game
 	 */
 	
 	
 	public static void playGame(boolean trainingMode, boolean displayVisual) throws InterruptedException
 	{
-		//create new game with discrete state representation to calculate properly
-		myGame = new GameSession(MAX_DISCRETE, displayVisual);
+		RunPhase phase = RunPhase.of(trainingMode, displayVisual);
+		if (phase != currentPhase)
+			beginPhase(phase);
+		phaseEvent.games++;
 		
-		//set variables for previous state, action, and reward
-		DiscreteState previousState = null;
-		int previousOption = -1;
-		int previousReward = 0;
-		
-		//set variables for current state, action, and reward
-		DiscreteState currentState = null;
-		int currentOption = -1;
-		int currentReward;
+		EpisodeEvent episode = null;
+		if (jfrRecording)
+		{
+			episode = new EpisodeEvent();
+			episode.begin();
+		}
 		
-		//set booleans for if ball hits the paddle or goes out-of-bounds
-		boolean hitPaddle = false;
-		boolean gameMissed = false;
+		if (profiler != null)
+			profiler.startGame();
 		
+		//create new game with discrete state representation to calculate properly
+		myGame = gameLoop.newGame(displayVisual, bounceRandom);
 		
-		//continue while game is not over
-		while (true)
+		//both paddles learn into the Q-table with the learner, see GameLoop for the steps and rewards
+		gameLoop.play(myGame, new PaddleAgent()
 		{
-			/**
-			 * assign value to current reward
-			 * get +1 if after previous state/action results in ball hitting paddle
-			 * get -1 if after previous state/action results in ball going out-of-bounds
-			 * get 0 otherwise
-			 */
-			
-			if(hitPaddle)
-				currentReward = BIG_REWARD;
-			else if(gameMissed)
-				currentReward = BIG_PUNISHMENT;
-			else
-				currentReward = 0;
-			
-			hitPaddle = false;
-			
-			//get discrete state of current game state
-			currentState = myGame.closestDiscrete();
-			
-			//get row in table representing current discrete state
-			int currentDiscreteRow;
-			
-			
-			/*
-			 * if ball goes out-of-bounds and game is over, the assign negative reward to all
-			 * state/action pairs in terminal state.  Also, assign state index to terminal state
-			 * index (last index).
-			 * 
-			 * Otherwise, use function to get index of current discrete state.
-			 */
-			if(myGame.getGameOver())
-			{				
-				currentDiscreteRow = STATE_REP_SIZE-1;
-				for(int i = 0; i < 3; i++)
-				{
-					scoreBoard[currentDiscreteRow][i].utility = -1;
-				}
-			}
-			else
-				currentDiscreteRow = getIntegerRepState(currentState);
-			
-
-			
-			if (previousState != null)
+			@Override
+			public int chooseAction(int stateRow, DiscreteState state)
 			{
-				int previousStateIdx = getIntegerRepState(previousState);
-				UtilScore previousCell = scoreBoard[previousStateIdx][previousOption];
-				previousCell.attempts += 1;
-				
-				double newerValue = calculateNewUtility(previousReward, currentDiscreteRow, previousCell, hitPaddle);
-				previousCell.utility = newerValue;
-				if(myGame.getGameOver())
-					break;
+				return LEARNER.chooseAction(stateRow, trainingMode);
 			}
 			
-			
-			//decide based on index of column what best action is (more explained in function documentation)
-			currentOption = findBestAction(currentDiscreteRow, trainingMode);
-			
-			
-			//select the action, if currentOption is 2, paddle stays where it is
-			if (currentOption == 0)
+			@Override
+			public void learn(int previousState, int previousOption, int reward, int currentState)
 			{
-				myGame.movePaddleUp();
+				learnTransition(previousState, previousOption, reward, currentState, trainingMode);
 			}
-			else if (currentOption == 1)
+			
+			@Override
+			public void learnWithoutLoss(int previousState, int previousOption, int reward)
 			{
-				myGame.movePaddleDown();
+				learnTransitionWithoutLoss(previousState, previousOption, reward, trainingMode);
 			}
 			
-			
-			//move the ball and update trajectory accordingly
-			myGame.moveBall();
-
-			//determine if ball hits or goes out-of-bounds
-			hitPaddle = myGame.isHit();
-			gameMissed = myGame.checkMiss();
-			
-			
-			if(displayVisual)
+			@Override
+			public void afterStep(GameSession game)
 			{
-				myGame.repaintWindow();
-				//Thread.sleep(sleepTime);
+				//an interrupt skips the rest of the animation and recording, and ends playGame after the game
+				try
+				{
+					if(displayVisual)
+						game.repaintWindow();
+					if(recorder != null)
+						recorder.captureFrame(game);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
 			}
-
-			
-			//assign current state, action, and reward to their corresponding "previous" counterparts
-			previousState = currentState;
-			previousReward = currentReward;
-			previousOption = currentOption;
+		});
+		
+		stepsPlayed += myGame.stepsThisGame();
+		if (profiler != null)
+			profiler.endGame(phase, myGame.stepsThisGame());
+		
+		if (episode != null && episode.shouldCommit())
+		{
+			episode.phase = phase.name();
+			episode.bounces = myGame.bouncesThisGame();
+			episode.steps = myGame.stepsThisGame();
+			episode.commit();
 		}
-	
-	
+		
+		if ((displayVisual || recorder != null) && Thread.interrupted())
+			throw new InterruptedException("Interrupted while showing or recording a game");
 	}
-
 	
 	
 	/**
-	 * Populate the hashmap of basic integer to state representation of board.
+	 * Follow the flight recordings of this JVM to keep jfrRecording up to date.
+	 * 
+	 * @return		true if a recording is running already
 	 */
-	public static void populateHashmaps()
+	private static boolean watchRecordings()
 	{
-		int counter = 0;
-		for (int a = 0; a < MAX_DISCRETE; a++)
+		if (!FlightRecorder.isAvailable())
+			return false;
+		
+		FlightRecorder.addListener(new FlightRecorderListener()
 		{
-			for(int b = 0; b < MAX_DISCRETE; b++)
+			@Override
+			public void recordingStateChanged(Recording recording)
 			{
-				for (int c = -1; c < 2; c += 2)
-				{
-					for(int d = -1; d < 2; d++)
-					{
-						for(int e = 0; e< MAX_DISCRETE; e++)
-						{
-							DiscreteState myState= new DiscreteState(a, b, c, d, e);
-							intToState.put(counter, myState);
-							counter++;
-							
-						}
-					}
-				}
+				jfrRecording = isRecording();
 			}
-		}
+		});
+		return isRecording();
 	}
 	
 	
+	/**
+	 * @return		true if a flight recording of this JVM is running
+	 */
+	private static boolean isRecording()
+	{
+		//looking at the recordings of an uninitialized recorder would start it
+		if (!FlightRecorder.isInitialized())
+			return false;
+		
+		for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings())
+		{
+			if (recording.getState() == RecordingState.RUNNING)
+				return true;
+		}
+		return false;
+	}
+	
 	
 	/**
-	 * Based on current discrete representation of game state, perform a reverse hash
-	 * so that based on discrete ball position/trajectory and paddle position you can find
-	 * the proper index in the Q-table to update.
+	 * End the JFR event of the current phase and begin one for the next.
 	 * 
-	 * @param current		current discrete state representation I got from the game state
-	 * @return				index in Q-table representing state
+	 * @param phase		phase of the next game
 	 */
-	public static int getIntegerRepState(DiscreteState current)
+	private static void beginPhase(RunPhase phase)
 	{
-		int boardCoordinateFactor = (current.row*MAX_DISCRETE+current.column)*6*MAX_DISCRETE;
-		
-		int xVelFactor;
-		if (current.xVelocity == -1)
-			xVelFactor = 0;
-		else
-			xVelFactor = 1;
-		
-		int yVelFactor = current.yVelocity + 1;
-		
-		int trajectoryFactor = (xVelFactor*3+yVelFactor)*MAX_DISCRETE;
-		
-		return boardCoordinateFactor + trajectoryFactor + current.paddlePosition;
+		endPhase();
+		currentPhase = phase;
+		phaseEvent = new PhaseEvent();
+		phaseEvent.phase = phase.name();
+		phaseEvent.begin();
 	}
 	
 	
 	/**
-	 * Display the parameters you set for your games and training/testing sessions.
+	 * End the JFR event of the current phase, if there is one.
 	 */
-	public static void displayParameters()
+	public static void endPhase()
 	{
-		System.out.println("Max number discrete row/column/paddle positions:  " + MAX_DISCRETE);
-		System.out.println("Number of total states:  "  + STATE_REP_SIZE);
+		if (phaseEvent != null)
+			phaseEvent.commit();
+		
+		phaseEvent = null;
+		currentPhase = null;
+	}
+
+	
+	
+	/**
+	 * Build the discretisation and layout from the settings, populate the state hash-map and
+	 * create an empty Q-table, either private to this process or
+	 * shared through a mapped file.  Also applies the ball physics, builds the step loop of the
+	 * games and resets the learner.
+	 * 
+	 * @throws IOException	if the shared table cannot be attached
+	 * @throws IllegalArgumentException		if the learner cannot train into a shared table
+	 */
+	public static void initializeTable() throws IOException
+	{
+		if (SHARED_TABLE != null && !LEARNER.canShareTable())
+			throw new IllegalArgumentException(LEARNER.name() + " cannot train into the shared table " + SHARED_TABLE);
+		
+
+		if (DISCRETIZATION == null)
+			discretization = DiscretizationSpec.uniform(MAX_DISCRETE);
+		else
+			discretization = DiscretizationSpec.parse(DISCRETIZATION, MAX_DISCRETE);
+		stateLayout = StateLayout.forName(STATE_LAYOUT, discretization);
+		GameSession.setPhysics(EXACT_COLLISIONS, TIMESTEP);
+		if (MIRROR_FOLDING && !(stateLayout instanceof MirrorFoldedLayout))
+			stateLayout = new MirrorFoldedLayout(stateLayout, discretization);
+		
+		intToState.clear();
+		populateHashmaps();
+		
+		//get # of table rows, layouts may leave gaps between states
+		STATE_REP_SIZE = stateLayout.size()+1;
+		
+		if (SHARED_TABLE != null)
+			scoreBoard = new MappedQTable(SHARED_TABLE, discretization, stateLayout.name(), STATE_REP_SIZE);
+		else if (PRIMITIVE_TABLE)
+			scoreBoard = new ArrayQTable(STATE_REP_SIZE);
+		else
+			scoreBoard = new HeapQTable(STATE_REP_SIZE);
+		
+		gameLoop = new GameLoop(discretization, SELF_PLAY, ACTION_REPEAT, REPEAT_WHILE_UNCHANGED, MAX_ACTION_REPEAT, 
+				BIG_REWARD, BIG_PUNISHMENT, STATE_REP_SIZE-1);
+		exploreMask = new ExplorationMask(scoreBoard, MAX_ATTEMPT_EXPLORE, intToState.keySet());
+		LEARNER.reset(STATE_REP_SIZE);
+		if (SHARED_TABLE != null)
+			LEARNER.startFrom(scoreBoard);
+		EXPLORATION.setExploreThreshold(MAX_ATTEMPT_EXPLORE);
+		EXPLORATION.reset(STATE_REP_SIZE);
+	}
+	
+	
+	/**
+	 * @return		number of discrete row/column/paddle positions of the games
+	 */
+	public static int getMaxDiscrete()
+	{
+		return MAX_DISCRETE;
+	}
+	
+	
+	/**
+	 * @return		step loop of the games, playing them the way playGame does
+	 */
+	public static GameLoop getGameLoop()
+	{
+		return gameLoop;
+	}
+	
+	
+	/**
+	 * @return		action selection while training
+	 */
+	public static ExplorationStrategy getExploration()
+	{
+		return EXPLORATION;
+	}
+	
+	
+	/**
+	 * @return		bins of each dimension of the discrete state
+	 */
+	public static DiscretizationSpec getDiscretization()
+	{
+		return discretization;
+	}
+	
+	
+	/**
+	 * @param stateRow		row of the table
+	 * @return				true if the row is the terminal state of "game over"
+	 */
+	public static boolean isTerminalState(int stateRow)
+	{
+		return stateRow == STATE_REP_SIZE-1;
+	}
+	
+	
+	/**
+	 * Make exploration and the bounces of the games reproducible.
+	 * 
+	 * Reproducible are training on the main thread, including self-play, action repeat and
+	 * learners drawing from getRandom, population training, whose agents are seeded from here,
+	 * and testing, also with sequential evaluation.  Games on other threads get generators of their own, so they no longer disturb
+	 * the main thread's bounces, but their results are not reproducible: the snapshot evaluator
+	 * skips snapshots while busy and may stop training at a game that depends on timing, and
+	 * actor-learner training depends on thread scheduling.
+	 * 
+	 * @param seed		seed of the randomizers
+	 */
+	public static void setSeed(long seed)
+	{
+		myRandom = new Random(seed);
+		bounceRandom = new Random(seed);
+		bounceSeed = seed;
+		bounceStreams = 0;
+	}
+	
+	
+	/**
+	 * @return		randomizer of the agent's exploration, reseeded by setSeed.  Only for the thread
+	 * 				training the Q-table, like the exploration itself.
+	 */
+	public static Random getRandom()
+	{
+		return myRandom;
+	}
+	
+	
+	/**
+	 * Undo setSeed:  exploration and the bounces are random again, as before the first setSeed.
+	 */
+	public static void clearSeed()
+	{
+		myRandom = new Random();
+		bounceRandom = null;
+		bounceSeed = null;
+		bounceStreams = 0;
+	}
+	
+	
+	/**
+	 * Bounce randomizer for games played on another thread.  Once seeded, the n-th generator
+	 * handed out after setSeed always has the same seed, so call this from the main thread.
+	 * 
+	 * @return		new generator derived from the seed, null if unseeded
+	 */
+	public static Random newBounceRandom()
+	{
+		if (bounceSeed == null)
+			return null;
+		
+		bounceStreams++;
+		return new Random(bounceSeed + 0x9E3779B97F4A7C15L*bounceStreams);
+	}
+	
+	
+	/**
+	 * @return		time steps simulated in all games played so far
+	 */
+	public static long getStepsPlayed()
+	{
+		return stepsPlayed;
+	}
+	
+	
+	/**
+	 * Select the learner used by playGame.
+	 * 
+	 * @param learner		update rule and action selection
+	 */
+	public static void setLearner(Learner learner)
+	{
+		LEARNER = learner;
+	}
+	
+	
+	/**
+	 * Select the exploration strategy used by findBestAction while training.
+	 * 
+	 * @param exploration	action selection while training
+	 */
+	public static void setExploration(ExplorationStrategy exploration)
+	{
+		EXPLORATION = exploration;
+	}
+	
+	
+	/**
+	 * Populate the hashmap of basic integer to state representation of board.
+	 */
+	public static void populateHashmaps()
+	{
+		for (int a = 0; a < discretization.rows(); a++)
+		{
+			for(int b = 0; b < discretization.columns(); b++)
+			{
+				for (int c = -1; c < 2; c += 2)
+				{
+					for(int d = -1; d < 2; d++)
+					{
+						for(int e = 0; e< discretization.paddles(); e++)
+						{
+							//with mirror folding only the stored image of each state has a row of its own
+							if (stateLayout.mirrors(a, b, c, d, e))
+								continue;
+							
+							DiscreteState myState= new DiscreteState(a, b, c, d, e);
+							intToState.put(stateLayout.index(a, b, c, d, e), myState);
+							
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * Based on current discrete representation of game state, perform a reverse hash
+	 * so that based on discrete ball position/trajectory and paddle position you can find
+	 * the proper index in the Q-table to update.  The order of the index is decided by
+	 * the state layout.
+	 * 
+	 * @param current		current discrete state representation I got from the game state
+	 * @return				index in Q-table representing state
+	 */
+	public static int getIntegerRepState(DiscreteState current)
+	{
+		return stateLayout.index(current.row, current.column, current.xVelocity, 
+				current.yVelocity, current.paddlePosition);
+	}
+	
+	
+	/**
+	 * @param current		discrete state representation of the game
+	 * @return				true if the state's table row is its mirror image, with up and down swapped
+	 */
+	public static boolean isMirrored(DiscreteState current)
+	{
+		return stateLayout.mirrors(current.row, current.column, current.xVelocity, 
+				current.yVelocity, current.paddlePosition);
+	}
+	
+	
+	/**
+	 * Copy the utilities and attempts of a checkpoint into the Q-table.
+	 * 
+	 * @param fileName		checkpoint file
+	 * @throws IOException	if the checkpoint cannot be read or was made with another discretisation or layout
+	 */
+	public static void loadCheckpoint(String fileName) throws IOException
+	{
+		copyIntoScoreBoard(readCheckpoint(fileName).table);
+	}
+	
+	
+	/**
+	 * Save the Q-table with its discretisation and layout.
+	 * 
+	 * @param fileName		checkpoint file
+	 * @throws IOException	if the checkpoint cannot be written
+	 */
+	public static void saveCheckpoint(String fileName) throws IOException
+	{
+		new QTableCheckpoint(discretization, stateLayout.name(), scoreBoard).save(fileName);
+	}
+	
+	
+	/**
+	 * Read a checkpoint made with the discretisation and layout of the Q-table.
+	 * 
+	 * @param fileName		checkpoint file
+	 * @return				the checkpoint
+	 * @throws IOException	if the checkpoint cannot be read or was made with another discretisation or layout
+	 */
+	private static QTableCheckpoint readCheckpoint(String fileName) throws IOException
+	{
+		QTableCheckpoint checkpoint = QTableCheckpoint.load(fileName);
+		if (!checkpoint.spec.equals(discretization) || !checkpoint.layoutName.equals(stateLayout.name())
+				|| checkpoint.table.rows() != STATE_REP_SIZE)
+		{
+			throw new IOException("Checkpoint " + fileName + " was made with discretisation " + checkpoint.spec 
+					+ " and layout " + checkpoint.layoutName);
+		}
+		
+		return checkpoint;
+	}
+	
+	
+	/**
+	 * Replace the utilities and attempts of the Q-table with those of a table of the same size.
+	 * 
+	 * @param table		table to copy
+	 */
+	private static void copyIntoScoreBoard(QTable table)
+	{
+		for (int a = 0; a < STATE_REP_SIZE; a++)
+		{
+			for (int b = 0; b < 3; b++)
+			{
+				scoreBoard.setUtility(a, b, table.utility(a, b));
+				scoreBoard.setAttempts(a, b, table.attempts(a, b));
+			}
+		}
+		
+		exploreMask.rebuild(scoreBoard, intToState.keySet());
+		LEARNER.startFrom(scoreBoard);
+	}
+	
+	
+	/**
+	 * Set the settings at the top of this class by name, e.g. "GAMMA" to "0.5", so several
+	 * configurations can run one after another in the same JVM.  Every call first restores the
+	 * values the settings had before the first call and clears the seed, see clearSeed, so nothing
+	 * carries over from an earlier configuration.  Numbers and booleans are parsed, "null" clears a string setting, and
+	 * LEARNER and EXPLORATION take the name of one of the learners or exploration strategies of this
+	 * package, no other class is loaded.  Takes effect with the next initializeTable.
+	 * 
+	 * @param settings		values by setting name
+	 * @throws IllegalArgumentException		if a setting does not exist or its value cannot be used
+	 */
+	public static void configure(Map<String, String> settings)
+	{
+		try
+		{
+			if (defaultSettings == null)
+			{
+				defaultSettings = new HashMap<String, Object>();
+				for (Field field : Driver.class.getDeclaredFields())
+				{
+					if (isSetting(field))
+						defaultSettings.put(field.getName(), field.get(null));
+				}
+			}
+			
+			for (Map.Entry<String, Object> entry : defaultSettings.entrySet())
+				Driver.class.getDeclaredField(entry.getKey()).set(null, entry.getValue());
+			clearSeed();
+			
+			for (Map.Entry<String, String> entry : settings.entrySet())
+			{
+				if (!defaultSettings.containsKey(entry.getKey()))
+					throw new IllegalArgumentException("Unknown setting " + entry.getKey());
+				
+				Field field = Driver.class.getDeclaredField(entry.getKey());
+				field.set(null, parseSetting(field.getType(), entry.getValue().trim()));
+			}
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalArgumentException("Cannot apply settings:  " + e.getMessage(), e);
+		}
+	}
+	
+	
+	/**
+	 * @return		true for the settings at the top of the class, the non-final static fields in capitals
+	 * 				other than the derived table size
+	 */
+	private static boolean isSetting(Field field)
+	{
+		int modifiers = field.getModifiers();
+		return Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && field.getName().matches("[A-Z][A-Z_]*")
+				&& !field.getName().equals("STATE_REP_SIZE");
+	}
+	
+	
+	/**
+	 * Value of a setting of some type from its text.
+	 */
+	private static Object parseSetting(Class<?> type, String text) throws ReflectiveOperationException
+	{
+		if (type == int.class)
+			return Integer.parseInt(text);
+		if (type == long.class)
+			return Long.parseLong(text);
+		if (type == double.class)
+			return Double.parseDouble(text);
+		if (type == boolean.class)
+		{
+			if (!text.equals("true") && !text.equals("false"))
+				throw new IllegalArgumentException("Expected true or false:  " + text);
+			return Boolean.parseBoolean(text);
+		}
+		if (type == String.class)
+			return text.equals("null") ? null : text;
+		
+		//learner or exploration strategy by class name, only the known ones
+		for (Class<?> known : STRATEGY_CLASSES)
+		{
+			if (known.getName().equals(text))
+			{
+				if (!type.isAssignableFrom(known))
+					throw new IllegalArgumentException(text + " is not a " + type.getSimpleName());
+				return known.getDeclaredConstructor().newInstance();
+			}
+		}
+		throw new IllegalArgumentException("Unknown learner or exploration strategy:  " + text);
+	}
+	
+	
+	/**
+	 * Clear the bounce frequencies and averages of earlier games, so the next run is reported on its own.
+	 */
+	public static void resetStatistics()
+	{
+		bounceFrequencyTrain.clear();
+		bounceFrequencyTest.clear();
+		maxFreqTraining = 0;
+		maxFreqTesting = 0;
+		cumulative = 0;
+		leftCumulative = 0;
+		belowThreshold = 0;
+		endPhase();
+	}
+	
+	
+	/**
+	 * Train and test with the current settings like main, without the visual trials, recording and
+	 * reports.  The statistics of earlier runs are cleared first, bounceFrequencyTest holds the test
+	 * games afterwards.
+	 * 
+	 * @return				average bounces of the test games
+	 * @throws InterruptedException 
+	 * @throws IOException	if a checkpoint cannot be read or written
+	 */
+	public static double runExperiment() throws InterruptedException, IOException
+	{
+		resetStatistics();
+		initializeTable();
+		
+		int games = TESTING_GAMES;
+		try
+		{
+			if (CHECKPOINT_INPUT != null)
+				loadCheckpoint(CHECKPOINT_INPUT);
+			if (EVAL_BASELINE != null)
+				readCheckpoint(EVAL_BASELINE);
+			
+			trainGames();
+			if (CHECKPOINT_OUTPUT != null)
+				saveCheckpoint(CHECKPOINT_OUTPUT);
+			
+			if (EVAL_PRECISION > 0 || EVAL_BASELINE != null)
+				games = evaluateSequentially();
+			else
+				testGames(false, TESTING_GAMES);
+			endPhase();
+		}
+		finally
+		{
+			//the next run maps its own table, also after a failed one
+			if (scoreBoard instanceof MappedQTable)
+				((MappedQTable) scoreBoard).close();
+		}
+		
+		double average = (games == 0) ? 0 : (double)(cumulative)/games;
+		cumulative = 0;
+		return average;
+	}
+	
+	
+	/**
+	 * Display the parameters you set for your games and training/testing sessions.
+	 */
+	public static void displayParameters()
+	{
+		System.out.println("Discretisation:  " + discretization);
+		System.out.println("Number of total states:  "  + STATE_REP_SIZE);
+		System.out.println("State layout:  " + stateLayout.name());
 		
 		System.out.println("Gamma:  " + GAMMA);
 		System.out.println("Learn Rate:  " + LEARN_RATE);
 		System.out.println("Max attempt explore:  " + MAX_ATTEMPT_EXPLORE);
+		System.out.println("Learner:  " + LEARNER.name());
+		System.out.println("Exploration:  " + EXPLORATION.name());
 		
 		System.out.println("Training sessions:  " + TRAINING_GAMES);
 		System.out.println("Testing sessions:  " + TESTING_GAMES);
@@ -488,33 +1278,211 @@ public class Driver
 	
 	
 	/**
-	 * Perform training sessions of the agent and populate training bounce frequency hash table.
+	 * Perform TRAINING_GAMES training sessions of the agent.
 	 * @throws InterruptedException 
 	 */
 	public static void trainGames() throws InterruptedException
 	{
+		trainGames(TRAINING_GAMES);
+	}
+	
+	
+	/**
+	 * Perform training sessions of the agent and populate training bounce frequency hash table.
+	 * 
+	 * @param count		number of training games
+	 * @throws InterruptedException 
+	 */
+	public static void trainGames(int count) throws InterruptedException
+	{
+		trainGames(count, null);
+	}
+	
+	
+	/**
+	 * Perform training sessions of the agent, handing the bounces of every game to a callback
+	 * that can stop training early.  Used by Trainer.
+	 * 
+	 * @param count			number of training games
+	 * @param afterGame		called with the bounces after each game, false stops training.  null for none.
+	 * @throws InterruptedException 
+	 * @throws IllegalStateException	for a callback when training in parallel, see isTrainingInParallel
+	 */
+	public static void trainGames(int count, IntPredicate afterGame) throws InterruptedException
+	{
+		if (afterGame != null && isTrainingInParallel())
+			throw new IllegalStateException("Games can only be followed one by one when training on the main thread, "
+					+ "not with ACTOR_THREADS or POPULATION_SIZE");
+		
+		if (ACTOR_THREADS > 0)
+		{
+			new ActorLearnerTrainer(ACTOR_THREADS, gameLoop, SNAPSHOT_INTERVAL).train(count);
+			return;
+		}
+		
+		if (POPULATION_SIZE > 0)
+		{
+			copyIntoScoreBoard(new PopulationTrainer(POPULATION_SIZE, gameLoop, GAMMA, LEARN_RATE, MAX_ATTEMPT_EXPLORE, 
+					POPULATION_READY_GAMES, POPULATION_EVAL_GAMES, myRandom.nextLong())
+					.train(count, POPULATION_LINEAGE));
+			return;
+		}
+		
+		LearningCurveWriter curveWriter = null;
+		if (CURVE_OUTPUT != null)
+		{
+			try
+			{
+				curveWriter = new LearningCurveWriter(CURVE_OUTPUT);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Learning curve disabled, cannot open " + CURVE_OUTPUT + ":  " + e.getMessage());
+			}
+		}
+		
+		//bounces of the last CURVE_WINDOW games, oldest overwritten first
+		int [] curveWindow = new int[CURVE_WINDOW];
+		long windowStart = System.nanoTime();
+		tdErrorSum = 0;
+		tdErrorCount = 0;
+		
+		SnapshotEvaluator evaluator = null;
+		if (EVAL_INTERVAL > 0)
+			evaluator = new SnapshotEvaluator(gameLoop, EVAL_GAMES, EVAL_TARGET_AVERAGE, newBounceRandom());
+		
 		//train
 		
-		for(int m = 0; m < TRAINING_GAMES; m++)
+		for(int m = 0; m < count; m++)
 		{
+			if (evaluator != null && evaluator.targetReached())
+			{
+				System.out.println("Target average reached after " + evaluator.targetReachedAt() 
+						+ " games, training stopped after " + m + " games");
+				break;
+			}
+			
 			playGame(true, false);
 			int bounces = myGame.bouncesThisGame();
 			
-			if (bounces > maxFreqTraining)
-				maxFreqTraining = bounces;
-			if(bounceFrequencyTrain.get(bounces) == null)
-				bounceFrequencyTrain.put(bounces, 1);
-			else
+			if (VISITS_OUTPUT != null && (m+1) % VISITS_INTERVAL == 0)
+				sampleVisits(m+1);
+			
+			if (evaluator != null && (m+1) % EVAL_INTERVAL == 0)
+				evaluator.submit(m+1, new PolicySnapshot(scoreBoard));
+			
+			if (curveWriter != null)
 			{
-				int toIncrement = bounceFrequencyTrain.get(bounces);
-				toIncrement++;
-				bounceFrequencyTrain.put(bounces, toIncrement);
+				curveWindow[m % CURVE_WINDOW] = bounces;
+				if ((m+1) % CURVE_INTERVAL == 0)
+				{
+					long now = System.nanoTime();
+					recordLearningCurve(curveWriter, m+1, curveWindow, now-windowStart);
+					windowStart = now;
+				}
 			}
-
+			
+			recordTrainingGame(bounces);
+			
+			if (afterGame != null && !afterGame.test(bounces))
+				break;
 		}
 
+		if (curveWriter != null)
+			curveWriter.close();
+		if (evaluator != null)
+			evaluator.shutdown();
 
-
+	}
+	
+	
+	/**
+	 * @return		true if training games are played by actor threads or a population of agents instead
+	 * 				of one by one on the calling thread
+	 */
+	public static boolean isTrainingInParallel()
+	{
+		return ACTOR_THREADS > 0 || POPULATION_SIZE > 0;
+	}
+	
+	
+	/**
+	 * Write the visitation of the Q-table to VISITS_OUTPUT as CSV grids and a heatmap image.
+	 * 
+	 * @param gamesPlayed		training games played so far, used in the file names
+	 */
+	private static void sampleVisits(int gamesPlayed)
+	{
+		VisitationStats visits = new VisitationStats(scoreBoard, intToState, discretization, MAX_ATTEMPT_EXPLORE);
+		File directory = new File(VISITS_OUTPUT);
+		String baseName = new File(directory, String.format("visits_%09d", gamesPlayed)).getPath();
+		
+		try
+		{
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Cannot create directory " + VISITS_OUTPUT);
+			
+			visits.writeCsv(baseName + ".csv");
+			visits.writeImage(baseName + ".png");
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not write visitation sample " + baseName + ":  " + e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Add the bounces of a training game to the training bounce frequency hash table.
+	 * 
+	 * @param bounces		bounces in the game
+	 */
+	public static void recordTrainingGame(int bounces)
+	{
+		if (bounces > maxFreqTraining)
+			maxFreqTraining = bounces;
+		if(bounceFrequencyTrain.get(bounces) == null)
+			bounceFrequencyTrain.put(bounces, 1);
+		else
+		{
+			int toIncrement = bounceFrequencyTrain.get(bounces);
+			toIncrement++;
+			bounceFrequencyTrain.put(bounces, toIncrement);
+		}
+	}
+	
+	
+	/**
+	 * Summarise the rolling window of training games and hand the record to the learning curve writer.
+	 * 
+	 * @param curveWriter		writer of the learning curve
+	 * @param gamesPlayed		training games played so far
+	 * @param ring				bounces of the last games by game number modulo its length
+	 * @param elapsedNanos		time spent on the games since the previous record
+	 */
+	private static void recordLearningCurve(LearningCurveWriter curveWriter, int gamesPlayed, int [] ring, long elapsedNanos)
+	{
+		//only the games played so far while the window is filling up
+		int [] window = Arrays.copyOf(ring, Math.min(gamesPlayed, ring.length));
+		Arrays.sort(window);
+		
+		long sum = 0;
+		for (int bounces : window)
+			sum += bounces;
+		
+		int explored = 3*intToState.size() - exploreMask.underExplored();
+		
+		double average = (double)(sum)/window.length;
+		double median = window[window.length/2];
+		int max = window[window.length-1];
+		double coverage = (double)(explored)/(3*intToState.size());
+		double meanTdError = (tdErrorCount == 0) ? 0 : tdErrorSum/tdErrorCount;
+		double gamesPerSec = CURVE_INTERVAL/(elapsedNanos/1e9);
+		
+		curveWriter.submit(gamesPlayed, average, median, max, coverage, meanTdError, gamesPerSec);
+		
+		tdErrorSum = 0;
+		tdErrorCount = 0;
 	}
 
 	
@@ -535,6 +1503,7 @@ public class Driver
 			playGame(false, visualize);
 			int bounces = myGame.bouncesThisGame();
 			cumulative += bounces;
+			leftCumulative += myGame.leftBouncesThisGame();
 			
 			if(visualize)
 			{
@@ -544,39 +1513,142 @@ public class Driver
 				System.out.println("Bounces in game  "  + gameNo + ":  "+ myGame.bouncesThisGame());
 			}
 			
-			if (bounces > maxFreqTesting)
-				maxFreqTesting = bounces;
-			if(bounceFrequencyTest.get(bounces) == null)
-				bounceFrequencyTest.put(bounces, 1);
-			else
+			recordTestGame(bounces);
+		}
+		
+		
+	}
+	
+	
+	/**
+	 * Add the bounces of a test game to the testing bounce frequency hash table.
+	 * 
+	 * @param bounces		bounces in the game
+	 */
+	private static void recordTestGame(int bounces)
+	{
+		if (bounces > maxFreqTesting)
+			maxFreqTesting = bounces;
+		if(bounceFrequencyTest.get(bounces) == null)
+			bounceFrequencyTest.put(bounces, 1);
+		else
+		{
+			int toIncrement = bounceFrequencyTest.get(bounces);
+			toIncrement++;
+			bounceFrequencyTest.put(bounces, toIncrement);
+		}
+	}
+	
+	
+	/**
+	 * Test the frozen greedy policy with SequentialEvaluation, against EVAL_BASELINE if it is set,
+	 * and print the average with its confidence interval.  The games are played with the step
+	 * loop of playGame, so the result is comparable with that of testGames.
+	 * 
+	 * @return		number of test games of the trained policy
+	 * @throws IOException	if the baseline checkpoint cannot be used
+	 */
+	public static int evaluateSequentially() throws IOException
+	{
+		SequentialEvaluation evaluation = new SequentialEvaluation(EVAL_BATCH_GAMES, EVAL_MAX_GAMES, EVAL_CONFIDENCE);
+		final PolicySnapshot policy = new PolicySnapshot(scoreBoard);
+		
+		//read before any game is played, so a bad baseline fails the run at once
+		final PolicySnapshot baseline = (EVAL_BASELINE == null) ? null : new PolicySnapshot(readCheckpoint(EVAL_BASELINE).table);
+		
+		IntSupplier candidate = new IntSupplier()
+		{
+			@Override
+			public int getAsInt()
 			{
-				int toIncrement = bounceFrequencyTest.get(bounces);
-				toIncrement++;
-				bounceFrequencyTest.put(bounces, toIncrement);
-			}
+				GameSession game = gameLoop.newGame(false, bounceRandom);
+				gameLoop.play(game, policy);
 				
-		}
+				int bounces = game.bouncesThisGame();
+				cumulative += bounces;
+				leftCumulative += game.leftBouncesThisGame();
+				recordTestGame(bounces);
+				return bounces;
+			}
+		};
 		
+		if (baseline != null)
+		{
+			SequentialEvaluation.Comparison comparison = evaluation.compare(candidate, new IntSupplier()
+			{
+				@Override
+				public int getAsInt()
+				{
+					return baseline.playGreedyGame(gameLoop, bounceRandom);
+				}
+			}, EVAL_PRECISION);
+			
+			System.out.println("Comparison with " + EVAL_BASELINE + ":  " + comparison);
+			return (int) comparison.candidate.count();
+		}
 		
+		RunningStats stats = evaluation.estimate(candidate, EVAL_PRECISION);
+		System.out.printf(Locale.ROOT, "Average bounces %.2f +- %.2f (%.0f%% confidence) after %d games%n", 
+				stats.mean(), evaluation.halfWidth(stats), 100*EVAL_CONFIDENCE, stats.count());
+		return (int) stats.count();
+	}
+	
+	
+	/**
+	 * Play test games and record them offscreen at full simulation speed.
+	 * 
+	 * @param output		".gif" file or directory for a PNG sequence
+	 * @param count			number of games to record
+	 * @throws InterruptedException 
+	 */
+	public static void recordGames(String output, int count) throws InterruptedException
+	{
+		recorder = new FrameRecorder(output);
+		try
+		{
+			for (int m = 0; m < count; m++)
+			{
+				playGame(false, false);
+				System.out.println("Recorded game " + (m+1) + ", bounces:  " + myGame.bouncesThisGame());
+			}
+		}
+		finally
+		{
+			FrameRecorder finished = recorder;
+			recorder = null;
+			try
+			{
+				System.out.println("Frames recorded to " + output + ":  " + finished.close());
+			}
+			catch (IOException e)
+			{
+				System.out.println("Recording to " + output + " failed:  " + e.getMessage());
+			}
+		}
 	}
 	
 	
 	/**
 	 * Calculates the number of actions from a given state with attempts lower than threshold.
+	 * Looked up in the exploration mask, which is kept up to date as attempts are made.
 	 * 
 	 * @param stateRow		index of a particular state
 	 * @return				number of actions that are attempted fewer times than threshold from a given state
 	 */
 	public static int numberBelowExploreThreshold(int stateRow)
 	{
-		int total = 0;
-		for(int i = 0; i < 3; i++)
-		{
-			if(scoreBoard[stateRow][i].attempts < MAX_ATTEMPT_EXPLORE)
-				total++;
-		}
-		
-		return total;
+		return exploreMask.count(stateRow);
+	}
+	
+	
+	/**
+	 * @param stateRow		index of a particular state
+	 * @param action		action from the state
+	 * @return				true if the action is attempted fewer times than threshold from the state
+	 */
+	public static boolean isBelowExploreThreshold(int stateRow, int action)
+	{
+		return exploreMask.isUnderExplored(stateRow, action);
 	}
 	
 	
@@ -590,20 +1662,10 @@ public class Driver
 	 */
 	public static int randomlyChooseAction(int stateRow)
 	{
-		ArrayList<Integer> chosenList = new ArrayList<Integer>();
-		for(int i = 0; i < 3; i++)
-		{
-			if(scoreBoard[stateRow][i].attempts < MAX_ATTEMPT_EXPLORE)
-				chosenList.add(i);
-		}
-		
-		int listSize = chosenList.size();
-		int bigSize = myRandom.nextInt(listSize);
-	
-		
-		int idx = chosenList.get(bigSize%listSize);
-		return idx;
+		if (exploreMask.count(stateRow) == 0)
+			return greedyAction(scoreBoard, stateRow);
 		
+		return exploreMask.randomAction(stateRow, myRandom);
 	}
 	
 	/**
@@ -634,8 +1696,11 @@ public class Driver
 				System.out.println("Bounces:  " + i + "  Frequency:  " + bounceFrequencyTest.get(i));
 		}
 		
-		System.out.println("\n\n\nAverage Bounces: "  + cumulative/gameTestNumber);
+		System.out.println("\n\n\nAverage Bounces: "  + String.format(Locale.ROOT, "%.2f", (double)(cumulative)/gameTestNumber));
+		if (SELF_PLAY)
+			System.out.println("Average Left Paddle Bounces: "  + String.format(Locale.ROOT, "%.2f", (double)(leftCumulative)/gameTestNumber));
 		cumulative = 0;
+		leftCumulative = 0;
 		bounceFrequencyTest.clear();
 	}
 
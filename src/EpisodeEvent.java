@@ -0,0 +1,24 @@
+import jdk.jfr.*;
+
+
+/**
+ * JFR event spanning one game of Driver.playGame.  Disabled unless a recording enables it,
+ * e.g. with jfr/pong.jfc.
+ */
+@Name("pong.Episode")
+@Label("Episode")
+@Category({"Pong", "Games"})
+@Description("One game played by Driver.playGame")
+@Enabled(false)
+@StackTrace(false)
+public class EpisodeEvent extends Event 
+{
+	@Label("Phase")
+	public String phase;
+	
+	@Label("Bounces")
+	public int bounces;
+	
+	@Label("Steps")
+	public int steps;
+}
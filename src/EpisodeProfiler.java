@@ -0,0 +1,99 @@
+import java.lang.management.ManagementFactory;
+
+
+/**
+ * Measures the bytes allocated and CPU time used by each game, aggregated per phase.
+ * 
+ * Uses the allocation counter of the HotSpot ThreadMXBean, so the numbers only cover the
+ * thread playing the games.  Where the JVM does not support the counters the profiler
+ * reports nothing.
+ */
+public class EpisodeProfiler 
+{
+	private com.sun.management.ThreadMXBean threads;
+	private boolean supported;
+	
+	//totals per phase, indexed by RunPhase ordinal
+	private long [] games = new long[RunPhase.values().length];
+	private long [] steps = new long[RunPhase.values().length];
+	private long [] allocatedBytes = new long[RunPhase.values().length];
+	private long [] cpuNanos = new long[RunPhase.values().length];
+	
+	//counters at the start of the current game
+	private long startBytes;
+	private long startCpu;
+	
+	
+	/**
+	 * Create the profiler and switch on the thread counters.
+	 */
+	public EpisodeProfiler()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			threads = (com.sun.management.ThreadMXBean) bean;
+			supported = threads.isThreadAllocatedMemorySupported() && threads.isCurrentThreadCpuTimeSupported();
+		}
+		
+		if (supported)
+		{
+			threads.setThreadAllocatedMemoryEnabled(true);
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		else
+			System.out.println("Episode profiling is not supported by this JVM");
+	}
+	
+	
+	/**
+	 * Take the counters at the start of a game.
+	 */
+	public void startGame()
+	{
+		if (!supported)
+			return;
+		
+		startBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		startCpu = threads.getCurrentThreadCpuTime();
+	}
+	
+	
+	/**
+	 * Add the counters since startGame to the totals of a phase.
+	 * 
+	 * @param phase			phase the game belongs to
+	 * @param gameSteps		steps simulated in the game
+	 */
+	public void endGame(RunPhase phase, int gameSteps)
+	{
+		if (!supported)
+			return;
+		
+		int p = phase.ordinal();
+		allocatedBytes[p] += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+		cpuNanos[p] += threads.getCurrentThreadCpuTime() - startCpu;
+		steps[p] += gameSteps;
+		games[p]++;
+	}
+	
+	
+	/**
+	 * Print bytes/step, bytes/game and CPU-ns/step of each phase that played games.
+	 */
+	public void printReport()
+	{
+		System.out.println("\n\nEpisode profile");
+		for (RunPhase phase : RunPhase.values())
+		{
+			int p = phase.ordinal();
+			if (games[p] == 0)
+				continue;
+			
+			double stepCount = Math.max(steps[p], 1);
+			System.out.printf("%-9s games %d  steps %d  bytes/step %.1f  bytes/game %.0f  CPU-ns/step %.1f%n", 
+					phase, games[p], steps[p], allocatedBytes[p]/stepCount, (double)(allocatedBytes[p])/games[p], 
+					cpuNanos[p]/stepCount);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+
+/**
+ * Expected SARSA: bootstrap from the expected utility of the next state under the policy.
+ * 
+ * While training the policy is the exploration strategy of Driver, whose action probabilities
+ * give the expectation, e.g. for the threshold exploration a uniform pick among the actions
+ * below the exploration threshold if there are any and the greedy action otherwise.
+ */
+public class ExpectedSarsaLearner implements Learner 
+{
+	//probabilities of the actions of the next state, reused by every update
+	private double [] probabilities = new double[3];
+	
+	
+	@Override
+	public String name()
+	{
+		return "Expected SARSA";
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+	}
+	
+	
+	@Override
+	public int chooseAction(int stateRow, boolean trainingMode)
+	{
+		return Driver.findBestAction(stateRow, trainingMode);
+	}
+	
+	
+	@Override
+	public void update(int previousState, int previousOption, double reward, int currentState, boolean trainingMode)
+	{
+		QTable table = Driver.scoreBoard;
+		double expected;
+		
+		//the terminal state is valued like in Q-learning, so all learners see the same rewards
+		if (Driver.isTerminalState(currentState))
+			expected = Driver.findGreatestUtil(currentState);
+		else
+		{
+			Driver.actionProbabilities(currentState, trainingMode, probabilities);
+			expected = 0;
+			for (int i = 0; i < 3; i++)
+			{
+				if (probabilities[i] > 0)
+					expected += probabilities[i]*table.utility(currentState, i);
+			}
+		}
+		
+		double newerValue = Driver.temporalDifference(reward, expected, 
+				table.utility(previousState, previousOption), table.attempts(previousState, previousOption));
+		table.setUtility(previousState, previousOption, newerValue);
+	}
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+
+
+/**
+ * Compares the exploration strategies by the cost of reaching a target test average.
+ * 
+ * Each strategy trains Q-learning from an empty table in chunks of games, tested after every
+ * chunk as in LearnerComparison.  The report gives the training games and training CPU-seconds
+ * needed to reach the target, or the best average if it was not reached.
+ * 
+ * Usage:  java ExplorationComparison [targetAverage] [maxGames] [chunkGames] [testGames]
+ */
+public class ExplorationComparison 
+{
+	/**
+	 * Main function.
+	 * @param args		see class documentation, all optional
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main(String [] args) throws InterruptedException, IOException
+	{
+		double target = (args.length > 0) ? Double.parseDouble(args[0]) : 9;
+		int maxGames = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+		int chunkGames = (args.length > 2) ? Integer.parseInt(args[2]) : 5000;
+		int testGames = (args.length > 3) ? Integer.parseInt(args[3]) : 500;
+		
+		ExplorationStrategy [] strategies = {new ThresholdExploration(), new DecayingEpsilonExploration(), new Ucb1Exploration()};
+		
+		System.out.println("Target test average:  " + target);
+		for (ExplorationStrategy strategy : strategies)
+		{
+			Driver.setExploration(strategy);
+			double [] result = LearnerComparison.run(new QLearner(), target, maxGames, chunkGames, testGames);
+			
+			if (result[3] > 0)
+				System.out.printf("%-22s reached target after %7.0f games, %7.2f CPU-seconds (test average %.2f)%n", 
+						strategy.name(), result[0], result[1], result[2]);
+			else
+				System.out.printf("%-22s missed target after %7.0f games, %7.2f CPU-seconds (test average %.2f)%n", 
+						strategy.name(), result[0], result[1], result[2]);
+		}
+		
+		Driver.setExploration(new ThresholdExploration());
+	}
+}
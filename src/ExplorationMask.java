@@ -0,0 +1,128 @@
+import java.util.Random;
+
+
+/**
+ * Incrementally maintained record of the under-explored actions of every state.
+ * 
+ * Each row of the table has a 3-bit mask with a bit set for every action attempted fewer
+ * times than the exploration threshold.  A bit is cleared only when the attempts of its
+ * action reach the threshold, and a running count of set bits gives the coverage of the
+ * table without scanning it.
+ * 
+ * With a shared table, attempts made by other processes are only seen on rebuild, so the mask
+ * may keep exploring an action a little longer than needed.
+ */
+public class ExplorationMask 
+{
+	//number of set bits of each mask
+	private static final byte [] COUNT = {0, 1, 1, 2, 1, 2, 2, 3};
+	
+	//actions whose bits are set in each mask, in increasing order
+	private static final byte [][] ACTIONS = {{}, {0}, {1}, {0, 1}, {2}, {0, 2}, {1, 2}, {0, 1, 2}};
+	
+	private byte [] masks;
+	private int threshold;
+	
+	//number of under-explored state/action pairs
+	private int underExplored;
+	
+	
+	/**
+	 * Build the mask of a table.
+	 * 
+	 * @param table			Q-table whose attempts to look at
+	 * @param threshold		attempts at which an action counts as explored
+	 * @param stateRows		rows of the real states, gaps in the layout and the terminal state are left out
+	 */
+	public ExplorationMask(QTable table, int threshold, Iterable<Integer> stateRows)
+	{
+		this.masks = new byte[table.rows()];
+		this.threshold = threshold;
+		rebuild(table, stateRows);
+	}
+	
+	
+	/**
+	 * Recompute the masks from the attempts in the table, after the attempts were replaced.
+	 * 
+	 * @param table			Q-table whose attempts to look at
+	 * @param stateRows		rows of the real states
+	 */
+	public void rebuild(QTable table, Iterable<Integer> stateRows)
+	{
+		underExplored = 0;
+		for (int row : stateRows)
+		{
+			int mask = 0;
+			for (int i = 0; i < 3; i++)
+			{
+				if (table.attempts(row, i) < threshold)
+					mask |= 1 << i;
+			}
+			masks[row] = (byte) mask;
+			underExplored += COUNT[mask];
+		}
+	}
+	
+	
+	/**
+	 * Record an attempt of an action, clearing its bit when the attempts reach the threshold.
+	 * 
+	 * @param stateRow		row of the state
+	 * @param action		action attempted
+	 * @param attempts		attempts of the action including this one
+	 */
+	public void recordAttempt(int stateRow, int action, int attempts)
+	{
+		int bit = 1 << action;
+		if (attempts >= threshold && (masks[stateRow] & bit) != 0)
+		{
+			masks[stateRow] &= ~bit;
+			underExplored--;
+		}
+	}
+	
+	
+	/**
+	 * @param stateRow		row of the state
+	 * @return				number of under-explored actions of the state
+	 */
+	public int count(int stateRow)
+	{
+		return COUNT[masks[stateRow]];
+	}
+	
+	
+	/**
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @return				true if the action is under-explored
+	 */
+	public boolean isUnderExplored(int stateRow, int action)
+	{
+		return (masks[stateRow] & (1 << action)) != 0;
+	}
+	
+	
+	/**
+	 * Pick one of the under-explored actions of a state at random.
+	 * 
+	 * @param stateRow		row of the state, must have an under-explored action
+	 * @param random		randomizer to pick with
+	 * @return				chosen action
+	 */
+	public int randomAction(int stateRow, Random random)
+	{
+		byte [] actions = ACTIONS[masks[stateRow]];
+		return actions[random.nextInt(actions.length)];
+	}
+	
+	
+	/**
+	 * @return		number of under-explored state/action pairs in the table
+	 */
+	public int underExplored()
+	{
+		return underExplored;
+	}
+}
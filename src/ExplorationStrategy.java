@@ -0,0 +1,60 @@
+import java.util.Random;
+
+
+/**
+ * Action selection of the agent while training, called by Driver.findBestAction on every step.
+ * 
+ * Strategies decide from the utilities and attempts in the Q-table and must not allocate, since
+ * they run once per simulated step.  Outside of training the agent always plays greedily.
+ * The actors of ActorLearnerTrainer call chooseAction at the same time from several threads,
+ * each on a frozen copy of the table and with a randomizer of its own.
+ */
+public interface ExplorationStrategy 
+{
+	/**
+	 * @return		short name of the strategy for printing
+	 */
+	public String name();
+	
+	
+	/**
+	 * Forget anything learned, called whenever a new Q-table is created.
+	 * 
+	 * @param rows		number of rows in the new table, including the terminal state
+	 */
+	public void reset(int rows);
+	
+	
+	/**
+	 * Set the attempts at which an action counts as explored, for strategies that explore by
+	 * counting attempts.  Driver passes MAX_ATTEMPT_EXPLORE before every new table.  Ignored
+	 * by default.
+	 * 
+	 * @param threshold		attempts at which an action counts as explored
+	 */
+	public default void setExploreThreshold(int threshold)
+	{
+	}
+	
+	
+	/**
+	 * Choose the action to take from a state while training.
+	 * 
+	 * @param table				Q-table to look in
+	 * @param stateRow			row of table best representing current game state
+	 * @param random			randomizer of the agent
+	 * @return					action (0 up, 1 down, 2 stay)
+	 */
+	public int chooseAction(QTable table, int stateRow, Random random);
+	
+	
+	/**
+	 * Probabilities with which chooseAction picks each action from a state, for learners that
+	 * bootstrap from the expected utility under the policy.
+	 * 
+	 * @param table				Q-table to look in
+	 * @param stateRow			row of table best representing current game state
+	 * @param probabilities		filled with the probability of each action
+	 */
+	public void actionProbabilities(QTable table, int stateRow, double [] probabilities);
+}
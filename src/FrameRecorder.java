@@ -0,0 +1,217 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.*;
+import javax.imageio.metadata.*;
+import javax.imageio.stream.ImageOutputStream;
+
+
+/**
+ * Renders games offscreen into image files, without a display.
+ * 
+ * Frames are captured as copies of the game state and rendered on a worker thread into one
+ * reused BufferedImage, with the same drawing code as the GUI.  Output ending in ".gif" is an
+ * animated GIF, anything else is a directory that receives a numbered PNG sequence.  The frame
+ * queue is bounded: if rendering falls behind, capturing waits rather than dropping frames.
+ * Once the worker has failed or stopped, frames are no longer taken and close reports the failure.
+ */
+public class FrameRecorder 
+{
+	//maximum number of captured frames waiting to be rendered
+	private static int QUEUE_CAPACITY = 256;
+	
+	//time each GIF frame is shown, in hundredths of a second
+	private static int GIF_FRAME_DELAY = 2;
+	
+	//milliseconds a full queue is waited on before checking the worker is still rendering
+	private static final long OFFER_WAIT_MS = 100;
+	
+	//empty frame telling the worker to finish
+	private static final double [] END_OF_FRAMES = new double[0];
+	
+	private ArrayBlockingQueue<double []> queue = new ArrayBlockingQueue<double []>(QUEUE_CAPACITY);
+	private Thread worker;
+	private String output;
+	private boolean gif;
+	private int framesWritten = 0;
+	private volatile IOException failure = null;
+	
+	
+	/**
+	 * Start the recorder.
+	 * 
+	 * @param output		GIF file or directory for PNG frames
+	 */
+	public FrameRecorder(String output)
+	{
+		this.output = output;
+		this.gif = output.toLowerCase().endsWith(".gif");
+		
+		worker = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					render();
+				}
+				catch (IOException e)
+				{
+					failure = e;
+					queue.clear();
+				}
+				catch (RuntimeException e)
+				{
+					failure = new IOException("Frame rendering failed:  " + e, e);
+					queue.clear();
+				}
+				catch (InterruptedException e)
+				{
+					failure = new IOException("Frame recorder was interrupted before writing " + output, e);
+					queue.clear();
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "frame-recorder");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	
+	/**
+	 * Capture the current state of a game as the next frame.
+	 * 
+	 * @param game		game to capture
+	 * @throws InterruptedException
+	 */
+	public void captureFrame(GameSession game) throws InterruptedException
+	{
+		hand(game.frameState());
+	}
+	
+	
+	/**
+	 * Queue a frame for the worker, waiting while the queue is full.
+	 * 
+	 * @return		false if the worker failed or stopped and the frame was not queued
+	 */
+	private boolean hand(double [] frame) throws InterruptedException
+	{
+		while (failure == null && worker.isAlive())
+		{
+			if (queue.offer(frame, OFFER_WAIT_MS, TimeUnit.MILLISECONDS))
+				return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Render the remaining frames and close the output.
+	 * 
+	 * @return		number of frames written
+	 * @throws IOException			if the frames could not be written
+	 * @throws InterruptedException
+	 */
+	public int close() throws IOException, InterruptedException
+	{
+		hand(END_OF_FRAMES);
+		worker.join();
+		
+		if (failure != null)
+			throw failure;
+		return framesWritten;
+	}
+	
+	
+	/**
+	 * Body of the worker thread.
+	 */
+	private void render() throws IOException, InterruptedException
+	{
+		int size = GameSession.FRAME_SIZE;
+		int imageType = gif ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_INT_RGB;
+		BufferedImage image = new BufferedImage(size, size, imageType);
+		Graphics2D g = image.createGraphics();
+		
+		ImageWriter gifWriter = null;
+		ImageOutputStream gifStream = null;
+		IIOMetadata gifMetadata = null;
+		File directory = new File(output);
+		
+		if (gif)
+		{
+			gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+			gifStream = ImageIO.createImageOutputStream(new File(output));
+			gifWriter.setOutput(gifStream);
+			gifWriter.prepareWriteSequence(null);
+			gifMetadata = gifFrameMetadata(gifWriter, image);
+		}
+		else if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create frame directory " + output);
+		
+		try
+		{
+			while (true)
+			{
+				double [] frame = queue.take();
+				if (frame == END_OF_FRAMES)
+					break;
+				
+				g.setColor(Color.WHITE);
+				g.fillRect(0, 0, size, size);
+				GameSession.drawScene(g, frame);
+				
+				if (gif)
+					gifWriter.writeToSequence(new IIOImage(image, null, gifMetadata), null);
+				else
+					ImageIO.write(image, "png", new File(directory, String.format("frame_%06d.png", framesWritten)));
+				framesWritten++;
+			}
+		}
+		finally
+		{
+			g.dispose();
+			if (gif)
+			{
+				gifWriter.endWriteSequence();
+				gifStream.close();
+				gifWriter.dispose();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Metadata shared by all GIF frames: frame delay and looping forever.
+	 */
+	private static IIOMetadata gifFrameMetadata(ImageWriter writer, BufferedImage image) throws IOException
+	{
+		IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+		String format = metadata.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+		
+		IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+		control.setAttribute("disposalMethod", "none");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("delayTime", Integer.toString(GIF_FRAME_DELAY));
+		control.setAttribute("transparentColorIndex", "0");
+		root.appendChild(control);
+		
+		IIOMetadataNode applications = new IIOMetadataNode("ApplicationExtensions");
+		IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+		loop.setAttribute("applicationID", "NETSCAPE");
+		loop.setAttribute("authenticationCode", "2.0");
+		loop.setUserObject(new byte[] {1, 0, 0});
+		applications.appendChild(loop);
+		root.appendChild(applications);
+		
+		metadata.setFromTree(format, root);
+		return metadata;
+	}
+}
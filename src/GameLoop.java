@@ -0,0 +1,231 @@
+import java.util.Random;
+
+
+/**
+ * Step loop of a game, shared by everything that plays Pong: Driver.playGame, the actors of
+ * ActorLearnerTrainer, the agents of PopulationTrainer and the greedy games of PolicySnapshot.
+ * All of them play the same game with the same rewards, whatever the settings.
+ * 
+ * Each paddle is handed the reward of its last action together with the state the action led
+ * to, so learning lags one decision behind the game.  Missing the ball leads to the terminal
+ * state.  In self-play only the paddle that missed reaches it, the game ends without a loss
+ * for the other one.  Every decision is played for actionRepeat steps, and with
+ * repeatWhileUnchanged for up to maxActionRepeat steps while no paddle's discrete state has
+ * changed since the decision.  Rewards add up over the repeats.
+ * 
+ * A loop only holds its settings, so one loop can play games on several threads at once.
+ */
+public class GameLoop
+{
+	//indices of the paddles in the per-paddle bookkeeping
+	public static final int RIGHT_PADDLE = 0;
+	public static final int LEFT_PADDLE = 1;
+	
+	private DiscretizationSpec spec;
+	private boolean selfPlay;
+	private int actionRepeat;
+	private boolean repeatWhileUnchanged;
+	private int maxActionRepeat;
+	private int hitReward;
+	private int missPunishment;
+	private int terminalRow;
+	
+	
+	/**
+	 * @param spec						bins of the discrete state of the games
+	 * @param selfPlay					a second paddle replaces the left wall
+	 * @param actionRepeat				steps each decision is played for
+	 * @param repeatWhileUnchanged		keep repeating past actionRepeat while the discrete state is unchanged
+	 * @param maxActionRepeat			cap on the steps of one decision with repeatWhileUnchanged
+	 * @param hitReward					reward for each hit of the paddle
+	 * @param missPunishment			reward for missing the ball
+	 * @param terminalRow				row of the terminal state of "game over"
+	 */
+	public GameLoop(DiscretizationSpec spec, boolean selfPlay, int actionRepeat, boolean repeatWhileUnchanged,
+			int maxActionRepeat, int hitReward, int missPunishment, int terminalRow)
+	{
+		this.spec = spec;
+		this.selfPlay = selfPlay;
+		this.actionRepeat = actionRepeat;
+		this.repeatWhileUnchanged = repeatWhileUnchanged;
+		this.maxActionRepeat = maxActionRepeat;
+		this.hitReward = hitReward;
+		this.missPunishment = missPunishment;
+		this.terminalRow = terminalRow;
+	}
+	
+	
+	/**
+	 * @return		true if the games have a second paddle learning on the left
+	 */
+	public boolean isSelfPlay()
+	{
+		return selfPlay;
+	}
+	
+	
+	/**
+	 * Create a game for this loop to play.
+	 * 
+	 * @param displayVisual		show the GUI
+	 * @param bounces			randomizer of the bounces, null to seed every bounce with the current time
+	 * @return					the new game
+	 */
+	public GameSession newGame(boolean displayVisual, Random bounces)
+	{
+		return new GameSession(spec, displayVisual, selfPlay, bounces);
+	}
+	
+	
+	/**
+	 * Play a game to its end.
+	 * 
+	 * @param game		game made by newGame
+	 * @param agent		decisions and learning of the paddles
+	 */
+	public void play(GameSession game, PaddleAgent agent)
+	{
+		//number of paddles learning in this game, indexed by RIGHT_PADDLE and LEFT_PADDLE
+		int paddles = selfPlay ? 2 : 1;
+		
+		//set variables for previous state, action, and reward of each paddle
+		int [] previousStateIdx = {-1, -1};
+		int [] previousOption = {-1, -1};
+		int [] previousReward = {0, 0};
+		
+		//set variables for current action and reward of each paddle
+		int [] currentOption = {-1, -1};
+		int currentReward;
+		
+		//action each paddle plays, the current action with up and down swapped if its state is mirrored
+		int [] playedOption = {-1, -1};
+		
+		//count of ball hits on each paddle and booleans for if the ball goes out-of-bounds past it
+		int [] paddleHits = {0, 0};
+		boolean [] gameMissed = {false, false};
+		
+		
+		//continue while game is not over
+		while (true)
+		{
+			for (int side = 0; side < paddles; side++)
+			{
+				/**
+				 * assign value to current reward
+				 * get +1 for each time previous state/action results in ball hitting paddle
+				 * get -1 if after previous state/action results in ball going out-of-bounds
+				 * get 0 otherwise
+				 */
+				currentReward = paddleHits[side]*hitReward;
+				if(gameMissed[side])
+					currentReward += missPunishment;
+				
+				paddleHits[side] = 0;
+				
+				//get row in table representing current discrete state
+				int currentDiscreteRow;
+				DiscreteState current = null;
+				boolean mirrored = false;
+				
+				
+				/*
+				 * if ball goes out-of-bounds past this paddle, the game is over and the state is the
+				 * terminal state.  In self-play the other paddle learns its last action without a loss.
+				 * 
+				 * Otherwise, use function to get index of current discrete state.  The left paddle
+				 * sees the mirrored board so both paddles share the same table.
+				 */
+				if(game.getGameOver() && !gameMissed[side])
+				{
+					if (previousStateIdx[side] >= 0)
+						agent.learnWithoutLoss(previousStateIdx[side], previousOption[side], previousReward[side]);
+					continue;
+				}
+				else if(game.getGameOver())
+					currentDiscreteRow = terminalRow;
+				else
+				{
+					current = (side == RIGHT_PADDLE) ? game.closestDiscrete() : game.closestDiscreteLeft();
+					currentDiscreteRow = Driver.getIntegerRepState(current);
+					mirrored = Driver.isMirrored(current);
+				}
+				
+				
+				if (previousStateIdx[side] >= 0)
+					agent.learn(previousStateIdx[side], previousOption[side], previousReward[side], currentDiscreteRow);
+				
+				
+				//decide on the action of the paddle
+				if(!game.getGameOver())
+				{
+					currentOption[side] = agent.chooseAction(currentDiscreteRow, current);
+					playedOption[side] = mirrored ? StateLayout.mirrorAction(currentOption[side]) : currentOption[side];
+				}
+				
+				
+				//assign current state, action, and reward to their corresponding "previous" counterparts
+				previousStateIdx[side] = currentDiscreteRow;
+				previousReward[side] = currentReward;
+				previousOption[side] = currentOption[side];
+			}
+			
+			if(game.getGameOver())
+				break;
+			
+			
+			//repeat the chosen actions, rewards add up over the repeats
+			int repeats = 0;
+			do
+			{
+				//select the action, if the option is 2, paddle stays where it is
+				game.applyAction(playedOption[RIGHT_PADDLE]);
+				if(selfPlay)
+					game.applyLeftAction(playedOption[LEFT_PADDLE]);
+				
+				
+				//move the ball and update trajectory accordingly
+				game.moveBall();
+				
+				//determine if ball hits or goes out-of-bounds
+				if(game.isHit())
+					paddleHits[RIGHT_PADDLE]++;
+				gameMissed[RIGHT_PADDLE] = game.checkMiss();
+				if(selfPlay)
+				{
+					if(game.isLeftHit())
+						paddleHits[LEFT_PADDLE]++;
+					gameMissed[LEFT_PADDLE] = game.checkLeftMiss();
+				}
+				
+				agent.afterStep(game);
+				repeats++;
+			}
+			while(!game.getGameOver() && keepRepeating(game, repeats, previousStateIdx, paddles));
+		}
+	}
+	
+	
+	/**
+	 * Decide if the actions of the last decision are repeated for another step.
+	 * 
+	 * @param game				the game being played
+	 * @param repeats			steps played since the decision
+	 * @param decisionRows		table row of each paddle at the decision
+	 * @param paddles			number of paddles learning in the game
+	 * @return					true to play another step without a new decision
+	 */
+	private boolean keepRepeating(GameSession game, int repeats, int [] decisionRows, int paddles)
+	{
+		if (repeats < actionRepeat)
+			return true;
+		if (!repeatWhileUnchanged || repeats >= maxActionRepeat)
+			return false;
+		
+		if (Driver.getIntegerRepState(game.closestDiscrete()) != decisionRows[RIGHT_PADDLE])
+			return false;
+		if (paddles > 1 && Driver.getIntegerRepState(game.closestDiscreteLeft()) != decisionRows[LEFT_PADDLE])
+			return false;
+		
+		return true;
+	}
+}
@@ -17,8 +17,21 @@ public class GameSession
 	private static int RADIUS = 10;
 	private static int THICKNESS = 5;
 	
+	//width and height of the drawn scene, the board plus a margin
+	public static int FRAME_SIZE = DIMENSION+100;
+	
 	private static int sleepTime = 50;
 	
+	//physics of the sessions created from now on, see setPhysics
+	private static boolean exactPhysics = false;
+	private static double physicsTimestep = 1;
+	
+	//bound on the collisions resolved within one step, against endless corner bounces
+	private static final int MAX_COLLISIONS_PER_STEP = 16;
+	
+	//distance the paddle moves per step of the original length
+	private static final double PADDLE_STEP = 0.04;
+	
 	//cap imposed if max speed is met or exceeded
 	private static double X_VELOCITY_CAP = 0.9;
 	private static double Y_VELOCITY_CAP = 0.9;
@@ -35,17 +48,32 @@ public class GameSession
 	//boolean to enable or disable GUI display
 	private boolean displayGUI; 
 	
+	//boolean for self-play with a second paddle on the left wall
+	private boolean twoPaddle;
+	
 	/*
-	maximum number of discrete row/column/paddle positions
+	bins of the discrete row/column/paddle positions and velocities
 	*/
 	
-	private int MAX_UNITS;
+	private DiscretizationSpec spec;
 	
 	//boolean for determining if game is over
 	private boolean gameOver;
 	
-	//bounces in current game
+	//boolean for if the game was lost by the left paddle
+	private boolean leftMissed;
+	
+	//bounces in current game, off the right paddle and off the left paddle in two-paddle mode
 	private int bounce = 0;
+	private int leftBounce = 0;
+	
+	//time steps simulated in current game
+	private int steps = 0;
+	
+	//collisions with the paddle planes during the last step, with exact collisions only
+	private boolean rightHit;
+	private boolean leftHit;
+	private boolean rightMissed;
 	
 	/**
 	 * Variables that are the game state
@@ -62,20 +90,77 @@ public class GameSession
 	
 	//paddle position and height variables
 	private double paddlePosition;
-	private double PADDLE_HEIGHT = 0.2;
+	private double leftPaddlePosition;
+	private static double PADDLE_HEIGHT = 0.2;
+	
+	//randomizer of the bounces of this session, null to seed every bounce with the current time
+	private final Random bounceRandom;
+	
+	//resolve collisions at their time of impact within a step, fixed for the session
+	private final boolean exactCollisions;
+	
+	//time simulated per step as a multiple of the original step, only with exact collisions
+	private final double timestep;
+	
+	//distance the paddle moves per step
+	private final double paddleStep;
 	
 	
 
 	/**
-	 * Initialize game session.
+	 * Initialize game session with a single paddle on the right.
 	 * 
 	 * @param maxUnits		Units of representation of row/column and paddle positions.
 	 */
 	public GameSession(int maxUnits, boolean displayGame)
+	{
+		this(maxUnits, displayGame, false);
+	}
+	
+	
+	/**
+	 * Initialize game session.
+	 * 
+	 * @param maxUnits		Units of representation of row/column and paddle positions.
+	 * @param twoPaddle		if true, the left wall is replaced by a second paddle
+	 */
+	public GameSession(int maxUnits, boolean displayGame, boolean twoPaddle)
+	{
+		this(DiscretizationSpec.uniform(maxUnits), displayGame, twoPaddle);
+	}
+	
+	
+	/**
+	 * Initialize game session.
+	 * 
+	 * @param spec			bins of the discrete state
+	 * @param twoPaddle		if true, the left wall is replaced by a second paddle
+	 */
+	public GameSession(DiscretizationSpec spec, boolean displayGame, boolean twoPaddle)
+	{
+		this(spec, displayGame, twoPaddle, null);
+	}
+	
+	
+	/**
+	 * Initialize game session with its own bounce randomizer.  A generator is only used by one
+	 * thread at a time, so sessions on different threads need different generators to be
+	 * reproducible.
+	 * 
+	 * @param spec			bins of the discrete state
+	 * @param twoPaddle		if true, the left wall is replaced by a second paddle
+	 * @param bounces		randomizer of the bounces, null to seed every bounce with the current time
+	 */
+	public GameSession(DiscretizationSpec spec, boolean displayGame, boolean twoPaddle, Random bounces)
 	{
 		this.displayGUI = displayGame;
+		this.bounceRandom = bounces;
+		this.exactCollisions = exactPhysics;
+		this.timestep = physicsTimestep;
+		this.paddleStep = PADDLE_STEP*physicsTimestep;
+		this.twoPaddle = twoPaddle;
 		
-		this.MAX_UNITS = maxUnits;
+		this.spec = spec;
 		
 		this.xVelocity = 0.03;
 		this.yVelocity = 0.01;
@@ -84,6 +169,7 @@ public class GameSession
 		this.yPosition = 0.5;
 		
 		this.paddlePosition = 0.5 - PADDLE_HEIGHT/2;
+		this.leftPaddlePosition = this.paddlePosition;
 		
 		
 		//in Constructor, if bool true then activate and display GUI
@@ -93,7 +179,7 @@ public class GameSession
 			gameFrame.setTitle("Pong");
 			gameFrame.setLocationRelativeTo(null);
 			gameFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-			gameFrame.setSize(DIMENSION+100, DIMENSION + 100);
+			gameFrame.setSize(FRAME_SIZE, FRAME_SIZE);
 			gameFrame.setVisible(true);
 			
 			//create JPanel showing the game and add it to JFrame
@@ -115,6 +201,9 @@ public class GameSession
 	
 	public boolean isHit()
 	{
+		if (exactCollisions)
+			return rightHit;
+		
 		if(this.xPosition >= 1.0 && this.xVelocity > 0)
 		{
 			double paddleBottom = this.paddlePosition;
@@ -122,29 +211,9 @@ public class GameSession
 			if(this.yPosition >= paddleBottom && this.yPosition <= paddleTop)
 			{
 				this.xPosition = 2-this.xPosition;
-				
-				this.xVelocity = newVelocityX(this.xVelocity);
-				
-				//cap the x and y velocities
-				if(Math.abs(this.xVelocity) >= MAX_VELOCITY_X_TOLERABLE )
-				{
-					if(this.xVelocity > 0)
-						this.xVelocity = X_VELOCITY_CAP;
-					else
-						this.xVelocity = -X_VELOCITY_CAP;
-				}
-				
-				this.yVelocity = newVelocityY(this.yVelocity);
-				if(Math.abs(this.yVelocity) >= MAX_VELOCITY_Y_TOLERABLE)
-				{
-					if(this.yVelocity > 0)
-						this.yVelocity = Y_VELOCITY_CAP;
-					else
-						this.yVelocity = -Y_VELOCITY_CAP;
-				}
-				
-				//increment your bounces
-				bounce++;
+				bounceOffPaddle(false);
+				if (Driver.jfrRecording)
+					PaddleHitEvent.emit("right", this.yPosition, this.paddlePosition, bounce);
 				return true;
 			}
 		}
@@ -153,6 +222,70 @@ public class GameSession
 	}
 	
 	
+	/**
+	 * Mirror of isHit for the left paddle in two-paddle mode.  Determines if ball's x-position <= 0
+	 * AND that the ball's y-position IS within the upper and lower bounds of the left paddle.
+	 * 
+	 * @return		bool for if the ball is sucessfully bounced by the left paddle
+	 */
+	public boolean isLeftHit()
+	{
+		if (exactCollisions)
+			return leftHit;
+		
+		if(this.twoPaddle && this.xPosition <= 0 && this.xVelocity < 0)
+		{
+			double paddleBottom = this.leftPaddlePosition;
+			double paddleTop = this.leftPaddlePosition + 0.2;
+			if(this.yPosition >= paddleBottom && this.yPosition <= paddleTop)
+			{
+				this.xPosition = -this.xPosition;
+				bounceOffPaddle(true);
+				if (Driver.jfrRecording)
+					PaddleHitEvent.emit("left", this.yPosition, this.leftPaddlePosition, leftBounce);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Randomize the ball's trajectory after it is hit by either paddle and count the bounce.
+	 * 
+	 * @param left		true for a bounce off the left paddle
+	 */
+	private void bounceOffPaddle(boolean left)
+	{
+		this.xVelocity = newVelocityX(this.xVelocity);
+		
+		//cap the x and y velocities
+		if(Math.abs(this.xVelocity) >= MAX_VELOCITY_X_TOLERABLE )
+		{
+			if(this.xVelocity > 0)
+				this.xVelocity = X_VELOCITY_CAP;
+			else
+				this.xVelocity = -X_VELOCITY_CAP;
+		}
+		
+		this.yVelocity = newVelocityY(this.yVelocity);
+		if(Math.abs(this.yVelocity) >= MAX_VELOCITY_Y_TOLERABLE)
+		{
+			if(this.yVelocity > 0)
+				this.yVelocity = Y_VELOCITY_CAP;
+			else
+				this.yVelocity = -Y_VELOCITY_CAP;
+		}
+		
+		//increment your bounces
+		if (left)
+			leftBounce++;
+		else
+			bounce++;
+	}
+	
+	
 	/**
 	 * Determines if ball's x-position >= 1 AND that the ball's y-position
 	 * is NOT within the upper and lower bounds of the paddle.
@@ -164,6 +297,9 @@ public class GameSession
 	 */
 	public boolean checkMiss()
 	{
+		if (exactCollisions)
+			return rightMissed;
+		
 		if(this.xPosition >= 1.0 && this.xVelocity > 0)
 		{
 			double paddleBottom = this.paddlePosition;
@@ -171,6 +307,37 @@ public class GameSession
 			if(this.yPosition < paddleBottom || this.yPosition > paddleTop)
 			{
 				gameOver = true;
+				if (Driver.jfrRecording)
+					BallMissEvent.emit("right", this.yPosition, this.paddlePosition, bounce);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Mirror of checkMiss for the left paddle in two-paddle mode.  Determines if ball's x-position <= 0
+	 * AND that the ball's y-position is NOT within the upper and lower bounds of the left paddle.
+	 * 
+	 * @return		bool for if the ball goes out of bounds past the left paddle
+	 */
+	public boolean checkLeftMiss()
+	{
+		if (exactCollisions)
+			return leftMissed;
+		
+		if(this.twoPaddle && this.xPosition <= 0 && this.xVelocity < 0)
+		{
+			double paddleBottom = this.leftPaddlePosition;
+			double paddleTop = this.leftPaddlePosition + 0.2;
+			if(this.yPosition < paddleBottom || this.yPosition > paddleTop)
+			{
+				gameOver = true;
+				leftMissed = true;
+				if (Driver.jfrRecording)
+					BallMissEvent.emit("left", this.yPosition, this.leftPaddlePosition, leftBounce);
 				return true;
 			}
 		}
@@ -187,6 +354,15 @@ public class GameSession
 	 */
 	public void moveBall()
 	{
+		this.steps++;
+		if (exactCollisions)
+		{
+			moveBallExactly(timestep);
+			if(this.displayGUI)
+				gameGUI.repaint();
+			return;
+		}
+		
 		this.xPosition += this.xVelocity;
 		this.yPosition += this.yVelocity;
 		
@@ -199,7 +375,7 @@ public class GameSession
 			this.yVelocity = -this.yVelocity;
 		}
 		
-		if (this.xPosition <= 0)
+		if (this.xPosition <= 0 && !this.twoPaddle)
 		{
 			this.xPosition = -this.xPosition;
 			this.xVelocity = -this.xVelocity;
@@ -210,6 +386,99 @@ public class GameSession
 	}
 	
 	
+	/**
+	 * Move the ball for some time, resolving every collision with a wall or paddle plane at its
+	 * time of impact.  The ball reflects off the walls, and at a paddle plane it either bounces
+	 * off the paddle with new velocities or, if the paddle is elsewhere, ends the game there.
+	 * Hits and misses are reported by isHit, checkMiss and their left paddle versions.
+	 * 
+	 * @param time		time to simulate, in original steps
+	 */
+	private void moveBallExactly(double time)
+	{
+		rightHit = false;
+		leftHit = false;
+		
+		for (int i = 0; i < MAX_COLLISIONS_PER_STEP && time > 0 && !gameOver; i++)
+		{
+			double wallTime = timeToBoundary(this.yPosition, this.yVelocity);
+			double sideTime = timeToBoundary(this.xPosition, this.xVelocity);
+			double impact = Math.min(time, Math.min(wallTime, sideTime));
+			
+			this.xPosition += this.xVelocity*impact;
+			this.yPosition += this.yVelocity*impact;
+			time -= impact;
+			
+			if (impact == wallTime)
+			{
+				this.yPosition = (this.yVelocity > 0) ? 1 : 0;
+				this.yVelocity = -this.yVelocity;
+			}
+			
+			if (impact == sideTime)
+				collideSide();
+		}
+	}
+	
+	
+	/**
+	 * Time until a coordinate moving at a velocity reaches 0 or 1.
+	 */
+	private static double timeToBoundary(double position, double velocity)
+	{
+		if (velocity > 0)
+			return Math.max(0, (1-position)/velocity);
+		if (velocity < 0)
+			return Math.max(0, -position/velocity);
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	
+	/**
+	 * Resolve the ball reaching the paddle plane at x = 1 or the left side at x = 0.
+	 */
+	private void collideSide()
+	{
+		if (this.xVelocity > 0)
+		{
+			this.xPosition = 1;
+			if (this.yPosition >= this.paddlePosition && this.yPosition <= this.paddlePosition + PADDLE_HEIGHT)
+			{
+				bounceOffPaddle(false);
+				rightHit = true;
+				if (Driver.jfrRecording)
+					PaddleHitEvent.emit("right", this.yPosition, this.paddlePosition, bounce);
+			}
+			else
+			{
+				gameOver = true;
+				rightMissed = true;
+				if (Driver.jfrRecording)
+					BallMissEvent.emit("right", this.yPosition, this.paddlePosition, bounce);
+			}
+			return;
+		}
+		
+		this.xPosition = 0;
+		if (!this.twoPaddle)
+			this.xVelocity = -this.xVelocity;
+		else if (this.yPosition >= this.leftPaddlePosition && this.yPosition <= this.leftPaddlePosition + PADDLE_HEIGHT)
+		{
+			bounceOffPaddle(true);
+			leftHit = true;
+			if (Driver.jfrRecording)
+				PaddleHitEvent.emit("left", this.yPosition, this.leftPaddlePosition, leftBounce);
+		}
+		else
+		{
+			gameOver = true;
+			leftMissed = true;
+			if (Driver.jfrRecording)
+				BallMissEvent.emit("left", this.yPosition, this.leftPaddlePosition, leftBounce);
+		}
+	}
+	
+	
 	/**
 	 * Print current board state for debugging purposes.
 	 */
@@ -225,66 +494,115 @@ public class GameSession
 	
 	
 	/**
-	 * Uses the DISCRETE_MAX_UNIT to calculate a discrete state that most closely
+	 * Uses the discretisation spec to calculate a discrete state that most closely
 	 * represents the current game state.
 	 * 
 	 * @return		discrete state for you to hash and find proper 
 	 */
 	public DiscreteState closestDiscrete()
 	{
-		int paddlePosition = (int) Math.floor(MAX_UNITS*this.paddlePosition/(1-this.PADDLE_HEIGHT));
-				
+		return discretize(spec, this.xPosition, this.yPosition, this.xVelocity, this.yVelocity, this.paddlePosition);
+	}
 	
-		if(paddlePosition < 0)
-			paddlePosition = 0;
-		if(paddlePosition > MAX_UNITS-1)
-			paddlePosition = MAX_UNITS-1;
-		
-		int xPosRep = (int) Math.floor(MAX_UNITS*this.xPosition);
-		
-		if (xPosRep < 0)
-			xPosRep = 0;
-		else if (xPosRep > MAX_UNITS-1)
-			xPosRep = MAX_UNITS-1;
-		
-		int yPosRep = (int) Math.floor(MAX_UNITS*this.yPosition);
-		
-		if (yPosRep < 0)
-			yPosRep = 0;
-		else if(yPosRep > MAX_UNITS-1)
-			yPosRep = MAX_UNITS-1;
+	
+	/**
+	 * Discrete state of the game as seen by the left paddle in two-paddle mode.  The board is
+	 * mirrored left to right so that the left paddle sees the same kind of state as the right one.
+	 * 
+	 * @return		mirrored discrete state for the left paddle
+	 */
+	public DiscreteState closestDiscreteLeft()
+	{
+		return discretize(spec, 1-this.xPosition, this.yPosition, -this.xVelocity, this.yVelocity, this.leftPaddlePosition);
+	}
+	
+	
+	/**
+	 * Calculate the discrete state that most closely represents a continuous game state,
+	 * with the same number of equal bins in every dimension.
+	 * 
+	 * @param maxUnits			units of representation of row/column and paddle positions
+	 * @param xPosition			ball x-position, paddle plane at 1
+	 * @param yPosition			ball y-position
+	 * @param xVelocity			ball x-velocity, positive towards the paddle
+	 * @param yVelocity			ball y-velocity
+	 * @param paddlePosition	bottom of the paddle
+	 * @return					discrete state for you to hash and find proper 
+	 */
+	public static DiscreteState discretize(int maxUnits, double xPosition, double yPosition, 
+			double xVelocity, double yVelocity, double paddlePosition)
+	{
+		return discretize(DiscretizationSpec.uniform(maxUnits), xPosition, yPosition, xVelocity, yVelocity, paddlePosition);
+	}
+	
+	
+	/**
+	 * Calculate the discrete state that most closely represents a continuous game state.
+	 * 
+	 * @param spec				bins of the discrete state
+	 * @param xPosition			ball x-position, paddle plane at 1
+	 * @param yPosition			ball y-position
+	 * @param xVelocity			ball x-velocity, positive towards the paddle
+	 * @param yVelocity			ball y-velocity
+	 * @param paddlePosition	bottom of the paddle
+	 * @return					discrete state for you to hash and find proper 
+	 */
+	public static DiscreteState discretize(DiscretizationSpec spec, double xPosition, double yPosition, 
+			double xVelocity, double yVelocity, double paddlePosition)
+	{
+		int paddleRep = spec.paddle(paddlePosition, 1-PADDLE_HEIGHT);
+		int xPosRep = spec.column(xPosition);
+		int yPosRep = spec.row(yPosition);
 		
 		int xVelRep;
-		int yVelRep;
-		
-		if (this.xVelocity > 0)
+		if (xVelocity > 0)
 			xVelRep = 1;
 		else
 			xVelRep = -1;
 		
-		if (Math.abs(this.yVelocity) < 0.015)
-			yVelRep = 0;
-		else if(this.yVelocity <= -0.015)
-			yVelRep = -1;
-		else
-			yVelRep = 1;
+		int yVelRep = spec.yVelocity(yVelocity);
 		
-		DiscreteState currentRep = new DiscreteState(yPosRep, xPosRep, xVelRep, yVelRep, paddlePosition);
+		DiscreteState currentRep = new DiscreteState(yPosRep, xPosRep, xVelRep, yVelRep, paddleRep);
 		
 		return currentRep;
 	}
 	
 	
 	
+	/**
+	 * Apply an action chosen by the agent.
+	 * 
+	 * @param action		0 moves the paddle up, 1 moves it down, 2 leaves it where it is
+	 */
+	public void applyAction(int action)
+	{
+		if (action == 0)
+			movePaddleUp();
+		else if (action == 1)
+			movePaddleDown();
+	}
+	
+	
+	/**
+	 * Apply an action chosen for the left paddle in two-paddle mode.
+	 * 
+	 * @param action		0 moves the left paddle up, 1 moves it down, 2 leaves it where it is
+	 */
+	public void applyLeftAction(int action)
+	{
+		if (action == 0)
+			this.leftPaddlePosition = paddleMovedUp(this.leftPaddlePosition);
+		else if (action == 1)
+			this.leftPaddlePosition = paddleMovedDown(this.leftPaddlePosition);
+	}
+	
+	
 	/**
 	 * Moves paddle up. if paddle is too close to top, then paddle reset to 0 position.
 	 */
 	public void movePaddleUp()
 	{
-		if(this.paddlePosition <= 0.76)
-			this.paddlePosition += 0.04;
-		else
-			this.paddlePosition = 0;
+		this.paddlePosition = paddleMovedUp(this.paddlePosition);
 	}
 	
 	/**
@@ -292,10 +610,53 @@ public class GameSession
 	 */
 	public void movePaddleDown()
 	{
-		if(this.paddlePosition >= 0.04)
-			this.paddlePosition -= 0.04;
+		this.paddlePosition = paddleMovedDown(this.paddlePosition);
+	}
+	
+	
+	/**
+	 * @param position		current bottom of a paddle
+	 * @return				bottom of the paddle after moving up, 0 if it was too close to top
+	 */
+	private double paddleMovedUp(double position)
+	{
+		if (exactCollisions)
+			return (position <= 1-PADDLE_HEIGHT-paddleStep) ? position + paddleStep : 0;
+		
+		if(position <= 0.76)
+			return position + 0.04;
+		else
+			return 0;
+	}
+	
+	
+	/**
+	 * @param position		current bottom of a paddle
+	 * @return				bottom of the paddle after moving down, top if it was too close to bottom
+	 */
+	private double paddleMovedDown(double position)
+	{
+		if (exactCollisions)
+			return (position >= paddleStep) ? position - paddleStep : 1-PADDLE_HEIGHT;
+		
+		if(position >= 0.04)
+			return position - 0.04;
 		else
-			this.paddlePosition = 0.8;
+			return 0.8;
+	}
+	
+	
+	/**
+	 * Flip the board upside down.  The ball's y-position and y-velocity and both paddles are
+	 * mirrored about the middle of the board, so the game goes on as the mirror image of
+	 * itself when up and down are swapped in every action from now on.
+	 */
+	public void mirrorVertically()
+	{
+		this.yPosition = 1-this.yPosition;
+		this.yVelocity = -this.yVelocity;
+		this.paddlePosition = 1-PADDLE_HEIGHT-this.paddlePosition;
+		this.leftPaddlePosition = 1-PADDLE_HEIGHT-this.leftPaddlePosition;
 	}
 	
 	
@@ -311,13 +672,32 @@ public class GameSession
 	
 	/**
 	 * 
-	 * @return # consecutive bounces on paddle this game
+	 * @return # consecutive bounces on paddle this game, on the right paddle in two-paddle mode
 	 */
 	public int bouncesThisGame()
 	{
 		return this.bounce;
 	}
 	
+	
+	/**
+	 * 
+	 * @return # bounces on the left paddle this game in two-paddle mode
+	 */
+	public int leftBouncesThisGame()
+	{
+		return this.leftBounce;
+	}
+	
+	/**
+	 * 
+	 * @return # time steps simulated this game
+	 */
+	public int stepsThisGame()
+	{
+		return this.steps;
+	}
+	
 	/**
 	 * prints # consecutive bounces this game
 	 */
@@ -328,7 +708,8 @@ public class GameSession
 	
 	
 	/**
-	 * When the ball hits the paddle, x-velocity is randomized using current time as seed.
+	 * When the ball hits the paddle, x-velocity is randomized using current time as seed,
+	 * unless the bounces are seeded.
 	 * Makes sure that abs(x-velocity) > 0.03
 	 * 
 	 * @param previous		previous x-velocity
@@ -336,7 +717,7 @@ public class GameSession
 	 */
 	private double newVelocityX(double previous)
 	{
-		Random generator = new Random(System.currentTimeMillis());
+		Random generator = bounceGenerator();
 		double copyOfPrevious = previous;
 		do
 		{
@@ -354,14 +735,15 @@ public class GameSession
 	
 	/**
 	 * 
-	 * When the ball hits the paddle, y-velocity is randomize using current time as seed.
+	 * When the ball hits the paddle, y-velocity is randomize using current time as seed,
+	 * unless the bounces are seeded.
 	 * 
 	 * @param previous		previous y-velocity
 	 * @return				new y-velocity
 	 */
 	private double newVelocityY(double previous)
 	{
-		Random generator = new Random(System.currentTimeMillis());
+		Random generator = bounceGenerator();
 		double copyOfPrevious = previous;
 		
 		double minX = -0.03;
@@ -376,6 +758,36 @@ public class GameSession
 	
 	
 	
+	/**
+	 * @return		randomizer for the next bounce
+	 */
+	private Random bounceGenerator()
+	{
+		return (bounceRandom != null) ? bounceRandom : new Random(System.currentTimeMillis());
+	}
+	
+	
+	/**
+	 * Choose how the ball moves in the sessions created from now on.  The original stepping
+	 * moves the ball a whole step and then reflects it off whatever it passed, judging a hit by
+	 * where the ball ends up.  Exact collisions find the time of impact with each wall and paddle
+	 * plane within the step, so longer steps keep the ball's trajectories and the paddle's speed.
+	 * The paddle still only changes course once per step, so it is steered more coarsely.
+	 * 
+	 * @param exact			resolve collisions at their time of impact
+	 * @param multiplier	time per step as a multiple of the original step, 1 without exact collisions
+	 * @throws IllegalArgumentException		for a multiplier other than 1 without exact collisions
+	 */
+	public static void setPhysics(boolean exact, double multiplier)
+	{
+		if (!(multiplier > 0) || (!exact && multiplier != 1))
+			throw new IllegalArgumentException("Timestep multiplier " + multiplier + " needs exact collisions and must be positive");
+		
+		exactPhysics = exact;
+		physicsTimestep = multiplier;
+	}
+	
+	
 	/**
 	 * Displays a 20x20 ascii representation of the game screen.  Deprecated
 	 */
@@ -459,35 +871,68 @@ public class GameSession
 		public void paintComponent(Graphics g) 
 		{
 			super.paintComponent(g);
-			
-			//set dimensions
-			int xCoordinate = (int) (DIMENSION*xPosition);
-			int yCoordinate = (int) (DIMENSION*yPosition);
-			int currentBottom = (int) (DIMENSION*paddlePosition);
-			
-			//set bottom boundary
-			g.setColor(Color.BLACK);
-			g.fillRect(0+50, 400+50, 400, THICKNESS);
-			g.fillRect(0+50, 0+50, 400, THICKNESS);
-			g.fillRect(0+50, 0+50, THICKNESS, 400);
-			
-			//set ball position
-			g.setColor(Color.RED);
-			g.fillOval(xCoordinate+50, yCoordinate+50, RADIUS, RADIUS);	
-			
-			//set rectangle position
+			drawScene(g, frameState());
+		}
+		
+	}
+	
+	
+	/**
+	 * Copy the state needed to draw the game, so it can be drawn later on another thread.
+	 * 
+	 * @return		{x-position, y-position, paddle, left paddle, two-paddle (0/1), game over (0/1), bounces,
+	 * 				left paddle bounces}
+	 */
+	public double [] frameState()
+	{
+		return new double[] {xPosition, yPosition, paddlePosition, leftPaddlePosition, 
+				twoPaddle ? 1 : 0, gameOver ? 1 : 0, bounce, leftBounce};
+	}
+	
+	
+	/**
+	 * Draw the game.  Used by the GUI and by the offscreen FrameRecorder, so both show the same scene.
+	 * 
+	 * @param g			graphics to draw on, at least FRAME_SIZE square
+	 * @param frame		state as returned by frameState
+	 */
+	public static void drawScene(Graphics g, double [] frame)
+	{
+		//set dimensions
+		int xCoordinate = (int) (DIMENSION*frame[0]);
+		int yCoordinate = (int) (DIMENSION*frame[1]);
+		int currentBottom = (int) (DIMENSION*frame[2]);
+		
+		//set bottom boundary
+		g.setColor(Color.BLACK);
+		g.fillRect(0+50, 400+50, 400, THICKNESS);
+		g.fillRect(0+50, 0+50, 400, THICKNESS);
+		
+		//left wall, or left paddle in two-paddle mode
+		if(frame[4] != 0)
+		{
 			g.setColor(Color.BLUE);
-			g.fillRect(400+50, currentBottom+50, THICKNESS, 80);
-			
-			if(getGameOver())
-			{
-				String message = "GAME OVER!  Bounces:  " + bouncesThisGame();
-				g.setColor(Color.BLACK);
-				g.drawString(message, 200, 250);
-			}
-
+			g.fillRect(0+50, (int) (DIMENSION*frame[3])+50, THICKNESS, 80);
 		}
+		else
+			g.fillRect(0+50, 0+50, THICKNESS, 400);
+		
+		//set ball position
+		g.setColor(Color.RED);
+		g.fillOval(xCoordinate+50, yCoordinate+50, RADIUS, RADIUS);	
 		
+		//set rectangle position
+		g.setColor(Color.BLUE);
+		g.fillRect(400+50, currentBottom+50, THICKNESS, 80);
+		
+		if(frame[5] != 0)
+		{
+			String message = "GAME OVER!  Bounces:  " + (int) frame[6];
+			if(frame[4] != 0)
+				message = "GAME OVER!  Bounces left " + (int) frame[7] + ", right " + (int) frame[6];
+			g.setColor(Color.BLACK);
+			g.drawString(message, 200, 250);
+		}
 	}
 	
 	
@@ -516,6 +961,8 @@ public class GameSession
 	{
 		System.out.println("\n\nMax X Speed:  " + X_VELOCITY_CAP);
 		System.out.println("Max Y Speed:  " + Y_VELOCITY_CAP);
+		if (exactPhysics)
+			System.out.println("Timestep:  " + physicsTimestep + " with exact collisions");
 		System.out.println("\n");
 	}
 	
@@ -0,0 +1,67 @@
+
+/**
+ * Q-table held on the heap of this JVM, one UtilScore per state/action pair.
+ */
+public class HeapQTable implements QTable 
+{
+	private UtilScore [][] scores;
+	
+	
+	/**
+	 * Create a table with every utility and attempt count at 0.
+	 * 
+	 * @param rows		number of rows, including the terminal state
+	 */
+	public HeapQTable(int rows)
+	{
+		scores = new UtilScore[rows][3];
+		
+		for(int a = 0; a < rows; a++)
+		{
+			for(int b = 0; b < 3; b++)
+				scores[a][b] = new UtilScore();
+		}
+	}
+	
+	
+	@Override
+	public int rows()
+	{
+		return scores.length;
+	}
+	
+	
+	@Override
+	public double utility(int stateRow, int action)
+	{
+		return scores[stateRow][action].utility;
+	}
+	
+	
+	@Override
+	public void setUtility(int stateRow, int action, double value)
+	{
+		scores[stateRow][action].utility = value;
+	}
+	
+	
+	@Override
+	public int attempts(int stateRow, int action)
+	{
+		return scores[stateRow][action].attempts;
+	}
+	
+	
+	@Override
+	public int addAttempt(int stateRow, int action)
+	{
+		return ++scores[stateRow][action].attempts;
+	}
+	
+	
+	@Override
+	public void setAttempts(int stateRow, int action, int attempts)
+	{
+		scores[stateRow][action].attempts = attempts;
+	}
+}
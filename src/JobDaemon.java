@@ -0,0 +1,489 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Long-running process that takes training and evaluation jobs, so many short runs share one
+ * warm JVM instead of each paying for startup, class loading and JIT warmup.
+ * 
+ * A job is a set of Driver settings by name, see Driver.configure, e.g. GAMMA, TRAINING_GAMES,
+ * TESTING_GAMES, CHECKPOINT_INPUT and CHECKPOINT_OUTPUT, plus an optional "seed" for
+ * Driver.setSeed.  Settings a job leaves out have their values from the top of Driver.  Each
+ * job runs Driver.runExperiment and its result holds the status, test average, test games,
+ * simulated steps and seconds, or the error.
+ * 
+ * Jobs come from two sources:
+ * 
+ * 		spool directory:  every "name.job" properties file is read and then claimed by renaming
+ * 						  it to "name.job.queued", and after the run "name.result" is written and the
+ * 						  job renamed to "name.job.done".  A file that cannot be read gets an error
+ * 						  result and is renamed to "name.job.done" right away.  Jobs still queued
+ * 						  when the daemon stopped are renamed back to "name.job" at startup and run
+ * 						  again.
+ * 		loopback socket:  one job per line, settings as key=value separated by ';', answered
+ * 						  when it finishes with "ok" or "error" followed by the result as key=value
+ * 						  pairs.  "status" is answered with the queued, finished and failed jobs.
+ * 
+ * Driver keeps its table and settings in static fields, so the pool runs one job at a time.
+ * Further jobs wait in a bounded queue; when it is full socket jobs are answered with "busy"
+ * and spooled jobs stay in the directory until there is room.  A warmup run at startup makes
+ * the first job run at full speed.
+ * 
+ * There is no authentication.  Every local user who can connect to the loopback port or write
+ * to the spool directory can run jobs, and a job runs with the rights of the daemon:  the path
+ * settings CHECKPOINT_INPUT, CHECKPOINT_OUTPUT, SHARED_TABLE, CURVE_OUTPUT, VISITS_OUTPUT,
+ * RECORD_OUTPUT, POPULATION_LINEAGE and EVAL_BASELINE read and write any file the daemon can.
+ * LEARNER and EXPLORATION only take the learners and exploration strategies of this package.
+ * So only run the daemon on a machine whose users are trusted, as a user with no more rights
+ * than they have, with a spool directory only they can write to, and never forward the port.
+ * 
+ * Usage:  java JobDaemon [-port N] [-spool dir] [-queue N] [-warmup games]
+ * 
+ * Without -spool the daemon only listens on the port, DEFAULT_PORT unless given.
+ */
+public class JobDaemon
+{
+	private static int DEFAULT_PORT = 7071;
+	private static int DEFAULT_QUEUE = 64;
+	private static int DEFAULT_WARMUP_GAMES = 20000;
+	
+	//milliseconds between scans of the spool directory
+	private static int SPOOL_POLL_MS = 1000;
+	
+	private static final String JOB_SUFFIX = ".job";
+	private static final String QUEUED_SUFFIX = ".job.queued";
+	private static final String DONE_SUFFIX = ".job.done";
+	private static final String RESULT_SUFFIX = ".result";
+	
+	//single worker, Driver's static state does not allow two jobs at once
+	private ThreadPoolExecutor worker;
+	
+	private AtomicInteger finished = new AtomicInteger();
+	private AtomicInteger failed = new AtomicInteger();
+	
+	
+	/**
+	 * @param queueCapacity		jobs that may wait for the worker
+	 */
+	public JobDaemon(int queueCapacity)
+	{
+		this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+	}
+	
+	
+	/**
+	 * Main function.
+	 * @param args		options, see the class documentation
+	 * @throws Exception
+	 */
+	public static void main(String [] args) throws Exception
+	{
+		int port = -1;
+		String spool = null;
+		int queue = DEFAULT_QUEUE;
+		int warmupGames = DEFAULT_WARMUP_GAMES;
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-port"))
+				port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-spool"))
+				spool = args[++i];
+			else if (args[i].equals("-queue"))
+				queue = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-warmup"))
+				warmupGames = Integer.parseInt(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		
+		if (spool == null && port < 0)
+			port = DEFAULT_PORT;
+		
+		JobDaemon daemon = new JobDaemon(queue);
+		if (warmupGames > 0)
+			daemon.warmup(warmupGames);
+		
+		if (spool != null)
+			daemon.startSpoolWatcher(Paths.get(spool));
+		
+		if (port >= 0)
+			daemon.serve(port);
+		else
+			Thread.currentThread().join();
+	}
+	
+	
+	/**
+	 * Train and test on a throwaway table until the game and learning code is compiled.
+	 * 
+	 * @param games		training games, a tenth as many test games
+	 */
+	public void warmup(int games) throws InterruptedException, ExecutionException
+	{
+		Map<String, String> job = new HashMap<String, String>();
+		job.put("TRAINING_GAMES", Integer.toString(games));
+		job.put("TESTING_GAMES", Integer.toString(Math.max(1, games/10)));
+		job.put("CHECKPOINT_INPUT", "null");
+		job.put("CHECKPOINT_OUTPUT", "null");
+		
+		Map<String, String> result = submit(job).get();
+		finished.set(0);
+		System.out.println("Warmed up in " + result.get("seconds") + " s");
+	}
+	
+	
+	/**
+	 * Queue a job.
+	 * 
+	 * @param job		settings by name
+	 * @return			result of the job once it has run
+	 * @throws RejectedExecutionException	if the queue is full
+	 */
+	public Future<Map<String, String>> submit(final Map<String, String> job)
+	{
+		return worker.submit(new Callable<Map<String, String>>()
+		{
+			@Override
+			public Map<String, String> call() throws InterruptedException
+			{
+				return run(job);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Run one job on the worker thread.
+	 */
+	private Map<String, String> run(Map<String, String> job) throws InterruptedException
+	{
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		long start = System.nanoTime();
+		long steps = Driver.getStepsPlayed();
+		
+		try
+		{
+			Map<String, String> settings = new HashMap<String, String>(job);
+			String seed = settings.remove("seed");
+			Driver.configure(settings);
+			if (seed != null)
+				Driver.setSeed(Long.parseLong(seed.trim()));
+			
+			double average = Driver.runExperiment();
+			
+			long games = 0;
+			for (int count : Driver.bounceFrequencyTest.values())
+				games += count;
+			
+			result.put("status", "ok");
+			result.put("average", String.format(Locale.ROOT, "%.4f", average));
+			result.put("testGames", Long.toString(games));
+			finished.incrementAndGet();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			result.put("status", "error");
+			result.put("message", String.valueOf(e.getMessage()).replace('\n', ' '));
+			failed.incrementAndGet();
+		}
+		
+		result.put("steps", Long.toString(Driver.getStepsPlayed() - steps));
+		result.put("seconds", String.format(Locale.ROOT, "%.3f", (System.nanoTime()-start)/1e9));
+		return result;
+	}
+	
+	
+	/**
+	 * Accept connections on the loopback interface until the process is stopped.
+	 * 
+	 * @param port		port to listen on
+	 * @throws IOException
+	 */
+	public void serve(int port) throws IOException
+	{
+		ExecutorService connections = Executors.newCachedThreadPool();
+		ServerSocket server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		System.out.println("Accepting jobs on " + server.getLocalSocketAddress());
+		
+		try
+		{
+			while (true)
+			{
+				final Socket client = server.accept();
+				connections.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						handle(client);
+					}
+				});
+			}
+		}
+		finally
+		{
+			server.close();
+			connections.shutdownNow();
+		}
+	}
+	
+	
+	/**
+	 * Answer the jobs of one connection until the client closes it.
+	 */
+	private void handle(Socket client)
+	{
+		try
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+			
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				out.write(respond(line.trim()));
+				out.write('\n');
+				out.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			//client went away, its queued jobs still run
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			try
+			{
+				client.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+	}
+	
+	
+	/**
+	 * Build the response to one request line, waiting for the job to finish.
+	 */
+	private String respond(String line) throws InterruptedException
+	{
+		if (line.equals("status"))
+			return "ok queued=" + worker.getQueue().size() + " finished=" + finished.get() + " failed=" + failed.get();
+		
+		Map<String, String> job = new HashMap<String, String>();
+		for (String entry : line.split(";"))
+		{
+			if (entry.trim().isEmpty())
+				continue;
+			
+			int equals = entry.indexOf('=');
+			if (equals < 0)
+				return "error expected key=value:  " + entry.trim();
+			job.put(entry.substring(0, equals).trim(), entry.substring(equals+1).trim());
+		}
+		
+		Map<String, String> result;
+		try
+		{
+			result = submit(job).get();
+		}
+		catch (RejectedExecutionException e)
+		{
+			return "busy";
+		}
+		catch (ExecutionException e)
+		{
+			return "error " + e.getCause();
+		}
+		
+		StringBuilder response = new StringBuilder(result.remove("status"));
+		for (Map.Entry<String, String> entry : result.entrySet())
+			response.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+		return response.toString();
+	}
+	
+	
+	/**
+	 * Start a daemon thread claiming the job files of a spool directory.
+	 */
+	private void startSpoolWatcher(final Path spool) throws IOException
+	{
+		Files.createDirectories(spool);
+		requeue(spool);
+		System.out.println("Watching " + spool + " for *" + JOB_SUFFIX + " files");
+		
+		Thread watcher = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while (true)
+				{
+					//a failed scan is retried, the watcher must not die with it
+					try
+					{
+						scan(spool);
+					}
+					catch (IOException | RuntimeException e)
+					{
+						System.out.println("Scan of " + spool + " failed:  " + e);
+					}
+					
+					try
+					{
+						Thread.sleep(SPOOL_POLL_MS);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		}, "spool-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+	
+	
+	/**
+	 * Rename the jobs claimed by an earlier daemon that stopped before they finished back to
+	 * "name.job", so they are claimed again.
+	 */
+	private void requeue(Path spool) throws IOException
+	{
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(spool, "*" + QUEUED_SUFFIX))
+		{
+			for (Path claimed : files)
+			{
+				String base = claimed.getFileName().toString();
+				base = base.substring(0, base.length()-QUEUED_SUFFIX.length());
+				Files.move(claimed, spool.resolve(base + JOB_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+				System.out.println("Requeued unfinished job " + base + JOB_SUFFIX);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Read, claim and queue the job files of the spool directory, oldest first, until the queue
+	 * is full.  A job the queue rejects is renamed back and claimed again by a later scan.
+	 */
+	private void scan(Path spool) throws IOException
+	{
+		List<Path> jobs = new ArrayList<Path>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(spool, "*" + JOB_SUFFIX))
+		{
+			for (Path file : files)
+				jobs.add(file);
+		}
+		
+		Collections.sort(jobs, new Comparator<Path>()
+		{
+			@Override
+			public int compare(Path a, Path b)
+			{
+				return Long.compare(a.toFile().lastModified(), b.toFile().lastModified());
+			}
+		});
+		
+		for (Path file : jobs)
+		{
+			if (worker.getQueue().remainingCapacity() == 0)
+				return;
+			
+			String base = file.getFileName().toString();
+			base = base.substring(0, base.length()-JOB_SUFFIX.length());
+			
+			//read the job before claiming it, a file that cannot be read is finished with an error
+			Properties properties = new Properties();
+			try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+			{
+				properties.load(in);
+			}
+			catch (IOException | IllegalArgumentException e)
+			{
+				Map<String, String> result = new LinkedHashMap<String, String>();
+				result.put("status", "error");
+				result.put("message", "Cannot read job:  " + String.valueOf(e.getMessage()).replace('\n', ' '));
+				writeResult(result, spool.resolve(base + RESULT_SUFFIX));
+				Files.move(file, spool.resolve(base + DONE_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+				failed.incrementAndGet();
+				System.out.println("Job " + file.getFileName() + ":  " + result);
+				continue;
+			}
+			
+			Map<String, String> job = new HashMap<String, String>();
+			for (String key : properties.stringPropertyNames())
+				job.put(key, properties.getProperty(key));
+			
+			Path claimed = spool.resolve(base + QUEUED_SUFFIX);
+			Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+			
+			//the queue may have filled since the check, e.g. with socket jobs
+			try
+			{
+				submitSpooled(job, claimed, spool.resolve(base + RESULT_SUFFIX), spool.resolve(base + DONE_SUFFIX));
+			}
+			catch (RejectedExecutionException e)
+			{
+				Files.move(claimed, file, StandardCopyOption.ATOMIC_MOVE);
+				return;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Queue a spooled job whose result is written next to it.
+	 */
+	private void submitSpooled(final Map<String, String> job, final Path claimed, final Path resultFile, final Path done)
+	{
+		worker.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Map<String, String> result = JobDaemon.this.run(job);
+					writeResult(result, resultFile);
+					Files.move(claimed, done, StandardCopyOption.REPLACE_EXISTING);
+					
+					System.out.println("Job " + claimed.getFileName() + ":  " + result);
+				}
+				catch (IOException e)
+				{
+					System.out.println("Could not write the result of " + claimed + ":  " + e.getMessage());
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Write the result of a spooled job as key=value lines.
+	 */
+	private static void writeResult(Map<String, String> result, Path resultFile) throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, String> entry : result.entrySet())
+			text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+		Files.write(resultFile, text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,114 @@
+import java.util.*;
+
+
+/**
+ * Benchmark of the Q-table state layouts at large MAX_DISCRETE values.
+ * 
+ * Trains through Driver.trainGames, the step loop and learner of real training, with each
+ * StateLayout and the primitive ArrayQTable, see Driver's PRIMITIVE_TABLE, and reports the
+ * training steps/sec.  The default HeapQTable keeps an object per utility wherever the heap
+ * puts it, so the layout hardly changes its locality; -heap runs it for comparison, with a
+ * heap of several GB at MAX_DISCRETE 96.  Java cannot read the hardware counters, so run under
+ * "perf stat -e cache-misses" with a single layout argument to get the cache misses.
+ * 
+ * Every run starts on a fresh table from the same seed after warmup games of its own.  The
+ * other settings are Driver's defaults.
+ * 
+ * Usage:  java LayoutBenchmark [maxDiscrete...] [-games N] [-warmup N] [-layout name] [-heap]
+ */
+public class LayoutBenchmark
+{
+	private static int DEFAULT_GAMES = 50000;
+	private static int DEFAULT_WARMUP_GAMES = 10000;
+	private static long SEED = 42;
+	
+	//bytes per state in the primitive table, three utilities of 8 bytes and three attempts of 4
+	private static int STATE_BYTES = 3*(8+4);
+	
+	private static final String [] LAYOUTS = {"row-major", "velocity-major", "morton"};
+	
+	
+	/**
+	 * Main function.
+	 * @param args		list of MAX_DISCRETE values, optional -games, -warmup, -layout and -heap
+	 * @throws Exception
+	 */
+	public static void main(String [] args) throws Exception
+	{
+		ArrayList<Integer> sizes = new ArrayList<Integer>();
+		int games = DEFAULT_GAMES;
+		int warmupGames = DEFAULT_WARMUP_GAMES;
+		String onlyLayout = null;
+		boolean heap = false;
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-warmup"))
+				warmupGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-layout"))
+				onlyLayout = args[++i];
+			else if (args[i].equals("-heap"))
+				heap = true;
+			else
+				sizes.add(Integer.parseInt(args[i]));
+		}
+		
+		if (sizes.isEmpty())
+		{
+			sizes.add(24);
+			sizes.add(48);
+			sizes.add(96);
+		}
+		
+		System.out.println("Q-table:  " + (heap ? "HeapQTable" : "ArrayQTable") + ", " + games + " training games per layout");
+		for (int maxDiscrete : sizes)
+		{
+			System.out.println("\nMAX_DISCRETE:  " + maxDiscrete);
+			for (String layout : LAYOUTS)
+			{
+				if (onlyLayout != null && !onlyLayout.equals(layout))
+					continue;
+				
+				Map<String, String> settings = new HashMap<String, String>();
+				settings.put("MAX_DISCRETE", Integer.toString(maxDiscrete));
+				settings.put("STATE_LAYOUT", layout);
+				settings.put("PRIMITIVE_TABLE", Boolean.toString(!heap));
+				Driver.configure(settings);
+				
+				train(warmupGames);
+				long [] result = train(games);
+				
+				double seconds = result[0]/1e9;
+				long tableBytes = (long)(Driver.scoreBoard.rows())*STATE_BYTES;
+				
+				System.out.printf("%-16s table %6d KB   %12.0f steps/sec   %10d steps%n",
+						layout, tableBytes/1024, result[1]/seconds, result[1]);
+			}
+		}
+		
+		Driver.configure(new HashMap<String, String>());
+	}
+	
+	
+	/**
+	 * Train games on a fresh table from the benchmark's seed.
+	 * 
+	 * @param games			number of training games
+	 * @return				{elapsed nanoseconds, simulated steps}
+	 * @throws Exception
+	 */
+	private static long [] train(int games) throws Exception
+	{
+		Driver.setSeed(SEED);
+		Driver.initializeTable();
+		
+		long steps = Driver.getStepsPlayed();
+		long start = System.nanoTime();
+		Driver.trainGames(games);
+		long elapsed = System.nanoTime() - start;
+		
+		return new long[] {elapsed, Driver.getStepsPlayed() - steps};
+	}
+}
@@ -0,0 +1,85 @@
+
+/**
+ * Update rule and action selection of the agent, called by Driver.playGame on every step.
+ * 
+ * Learners work on Driver.scoreBoard.  Driver counts the attempts of each state/action pair
+ * before calling update, so the exploration threshold and alpha behave the same for all learners.
+ */
+public interface Learner 
+{
+	/**
+	 * @return		short name of the learner for printing
+	 */
+	public String name();
+	
+	
+	/**
+	 * Forget anything learned, called whenever a new Q-table is created.
+	 * 
+	 * @param rows		number of rows in the new table, including the terminal state
+	 */
+	public void reset(int rows);
+	
+	
+	/**
+	 * Continue from the utilities of a table that were not learned by this learner, called after
+	 * a checkpoint or another table is copied into Driver.scoreBoard and when a shared table is
+	 * attached.  Learners keeping estimates of their own start them from the table.
+	 * 
+	 * @param table		the Q-table holding the utilities
+	 */
+	public default void startFrom(QTable table)
+	{
+	}
+	
+	
+	/**
+	 * @return		false if the learner keeps estimates of its own and writes them back over the
+	 * 				Q-table, which would undo the updates of other processes on a shared table
+	 */
+	public default boolean canShareTable()
+	{
+		return true;
+	}
+	
+	
+	/**
+	 * Choose the action to take from a state.
+	 * 
+	 * @param stateRow			row of table best representing current game state
+	 * @param trainingMode		if true, use the exploration/exploitation tradeoff
+	 * @return					action (0 up, 1 down, 2 stay)
+	 */
+	public int chooseAction(int stateRow, boolean trainingMode);
+	
+	
+	/**
+	 * Learn from a transition.
+	 * 
+	 * @param previousState		row of the state the action was taken from
+	 * @param previousOption	action taken
+	 * @param reward			reward of the action
+	 * @param currentState		row of the state the action led to, possibly the terminal state
+	 * @param trainingMode		if true, the policy is using the exploration/exploitation tradeoff
+	 */
+	public void update(int previousState, int previousOption, double reward, int currentState, boolean trainingMode);
+	
+	
+	/**
+	 * Learn from the last action of a paddle whose game was ended by the other paddle missing
+	 * in self-play.  The game is over for it too, but the end is worth nothing instead of the
+	 * loss of the terminal state.
+	 * 
+	 * @param previousState		row of the state the action was taken from
+	 * @param previousOption	action taken
+	 * @param reward			reward of the action
+	 * @param trainingMode		if true, the policy is using the exploration/exploitation tradeoff
+	 */
+	public default void updateWithoutLoss(int previousState, int previousOption, double reward, boolean trainingMode)
+	{
+		QTable table = Driver.scoreBoard;
+		double newerValue = Driver.temporalDifference(reward, 0, 
+				table.utility(previousState, previousOption), table.attempts(previousState, previousOption));
+		table.setUtility(previousState, previousOption, newerValue);
+	}
+}
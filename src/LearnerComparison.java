@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * Compares the learners by the cost of reaching a target test average.
+ * 
+ * Each learner trains from an empty table in chunks of games.  After every chunk the greedy
+ * policy is frozen and played for a batch of test games.  The report gives the training games
+ * and training CPU-seconds needed to reach the target, or the best average if it was not reached.
+ * 
+ * Usage:  java LearnerComparison [targetAverage] [maxGames] [chunkGames] [testGames]
+ */
+public class LearnerComparison 
+{
+	/**
+	 * Main function.
+	 * @param args		see class documentation, all optional
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main(String [] args) throws InterruptedException, IOException
+	{
+		double target = (args.length > 0) ? Double.parseDouble(args[0]) : 9;
+		int maxGames = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+		int chunkGames = (args.length > 2) ? Integer.parseInt(args[2]) : 5000;
+		int testGames = (args.length > 3) ? Integer.parseInt(args[3]) : 500;
+		
+		Learner [] learners = {new QLearner(), new SarsaLearner(), new ExpectedSarsaLearner(), new DoubleQLearner()};
+		
+		System.out.println("Target test average:  " + target);
+		for (Learner learner : learners)
+			report(learner, run(learner, target, maxGames, chunkGames, testGames));
+	}
+	
+	
+	/**
+	 * Train one learner until the target is reached or maxGames are played.
+	 * 
+	 * @return		{training games, training CPU-seconds, last test average, 1 if the target was reached}
+	 */
+	public static double [] run(Learner learner, double target, int maxGames, int chunkGames, int testGames) 
+			throws InterruptedException, IOException
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		
+		Driver.setLearner(learner);
+		Driver.initializeTable();
+		
+		long cpuNanos = 0;
+		int games = 0;
+		double average = 0;
+		
+		while (games < maxGames)
+		{
+			long start = threads.getCurrentThreadCpuTime();
+			for (int i = 0; i < chunkGames; i++)
+				Driver.playGame(true, false);
+			cpuNanos += threads.getCurrentThreadCpuTime() - start;
+			games += chunkGames;
+			
+			PolicySnapshot snapshot = new PolicySnapshot(Driver.scoreBoard);
+			long total = 0;
+			for (int i = 0; i < testGames; i++)
+				total += snapshot.playGreedyGame(Driver.getGameLoop(), null);
+			average = (double)(total)/testGames;
+			
+			if (average >= target)
+				return new double[] {games, cpuNanos/1e9, average, 1};
+		}
+		
+		return new double[] {games, cpuNanos/1e9, average, 0};
+	}
+	
+	
+	private static void report(Learner learner, double [] result)
+	{
+		if (result[3] > 0)
+			System.out.printf("%-18s reached target after %7.0f games, %7.2f CPU-seconds (test average %.2f)%n", 
+					learner.name(), result[0], result[1], result[2]);
+		else
+			System.out.printf("%-18s missed target after %7.0f games, %7.2f CPU-seconds (test average %.2f)%n", 
+					learner.name(), result[0], result[1], result[2]);
+	}
+}
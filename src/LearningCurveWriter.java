@@ -0,0 +1,184 @@
+import java.io.*;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+
+/**
+ * Streams learning-curve records to a file from a background thread.
+ * 
+ * Records are handed over through a bounded queue so that the training loop never waits
+ * on I/O.  If the queue is full the record is dropped and counted instead.  Files ending
+ * in ".json" or ".jsonl" get one JSON object per line, anything else gets CSV.
+ * 
+ * The bounce statistics of a record are over a rolling window of the latest games, see
+ * Driver.CURVE_WINDOW, the TD error and speed over the games since the previous record.
+ */
+public class LearningCurveWriter
+{
+	/**
+	 * Field names of a record, in the order they are submitted.
+	 */
+	public static final String [] FIELDS = {"games", "averageBounces", "p50Bounces", "maxBounces",
+			"coverage", "meanTdError", "gamesPerSec"};
+	
+	//number format of each field, kept short so that long runs give compact files
+	private static final String [] FORMATS = {"%.0f", "%.3f", "%.1f", "%.0f", "%.4f", "%.5g", "%.1f"};
+	
+	//maximum number of records waiting to be written
+	private static int QUEUE_CAPACITY = 1024;
+	
+	//empty record telling the writer thread to finish
+	private static final double [] END_OF_STREAM = new double[0];
+	
+	private ArrayBlockingQueue<double []> queue = new ArrayBlockingQueue<double []>(QUEUE_CAPACITY);
+	private Writer output;
+	private boolean jsonLines;
+	private Thread writerThread;
+	
+	//records dropped because the queue was full, only touched by the submitting thread
+	private long dropped = 0;
+	
+	
+	/**
+	 * Open the output file and start the writer thread.
+	 * 
+	 * @param fileName		file to write, format chosen by extension
+	 * @throws IOException	if the file cannot be opened
+	 */
+	public LearningCurveWriter(String fileName) throws IOException
+	{
+		this.jsonLines = fileName.endsWith(".json") || fileName.endsWith(".jsonl");
+		this.output = new BufferedWriter(new FileWriter(fileName));
+		
+		try
+		{
+			if (!jsonLines)
+				output.write(String.join(",", FIELDS) + "\n");
+		}
+		catch (IOException e)
+		{
+			output.close();
+			throw e;
+		}
+		
+		writerThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		}, "learning-curve-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+	
+	
+	/**
+	 * Queue a record without blocking.
+	 * 
+	 * @param games				training games played so far
+	 * @param average			average bounces over the window
+	 * @param median			median bounces over the window
+	 * @param max				maximum bounces over the window
+	 * @param coverage			fraction of state/action pairs explored to the threshold
+	 * @param meanTdError		mean absolute TD error since the previous record
+	 * @param gamesPerSec		training speed since the previous record
+	 */
+	public void submit(long games, double average, double median, int max, double coverage,
+			double meanTdError, double gamesPerSec)
+	{
+		double [] record = {games, average, median, max, coverage, meanTdError, gamesPerSec};
+		if (!queue.offer(record))
+			dropped++;
+	}
+	
+	
+	/**
+	 * Write out the remaining records and close the file.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException
+	{
+		queue.put(END_OF_STREAM);
+		writerThread.join();
+		
+		if (dropped > 0)
+			System.out.println("Learning curve records dropped:  " + dropped);
+	}
+	
+	
+	/**
+	 * Body of the writer thread.  Flushes whenever the queue runs empty so the file can be
+	 * followed live.  After a write failure the remaining records are still taken off the
+	 * queue so that close() never waits on a full queue.
+	 */
+	private void drain()
+	{
+		boolean failed = false;
+		try
+		{
+			while (true)
+			{
+				double [] record = queue.take();
+				if (record == END_OF_STREAM)
+					break;
+				if (failed)
+					continue;
+				
+				try
+				{
+					output.write(format(record));
+					if (queue.isEmpty())
+						output.flush();
+				}
+				catch (IOException e)
+				{
+					System.out.println("Learning curve output failed:  " + e.getMessage());
+					failed = true;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			try
+			{
+				output.close();
+			}
+			catch (IOException e)
+			{
+				System.out.println("Learning curve output failed:  " + e.getMessage());
+			}
+		}
+	}
+	
+	
+	/**
+	 * Format a record as one line of CSV or JSON.
+	 */
+	private String format(double [] record)
+	{
+		StringBuilder line = new StringBuilder();
+		if (jsonLines)
+			line.append('{');
+		
+		for (int i = 0; i < record.length; i++)
+		{
+			if (i > 0)
+				line.append(',');
+			if (jsonLines)
+				line.append('"').append(FIELDS[i]).append("\":");
+			
+			line.append(String.format(Locale.ROOT, FORMATS[i], record[i]));
+		}
+		
+		if (jsonLines)
+			line.append('}');
+		return line.append('\n').toString();
+	}
+}
@@ -0,0 +1,182 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+
+/**
+ * Q-table stored in a memory-mapped file that several processes on one host can train into
+ * at the same time.
+ * 
+ * The file starts with a header holding a format version, a hash of the discretisation, the
+ * state layout and the number of rows, so that a process can only attach to a table of the same shape.  After
+ * the header come the utilities (8 bytes per state/action pair) and then the attempt counts
+ * (4 bytes each).
+ * 
+ * Cells are read and written with plain, relaxed accesses: aligned 8-byte stores are not torn
+ * on the platforms we train on, but concurrent updates of the same cell from two processes can
+ * overwrite each other.  Lost updates only cost a few samples, like Hogwild-style training.
+ */
+public class MappedQTable implements QTable 
+{
+	//"QTM1" at the start of every mapped table
+	private static final int MAGIC = 0x51544D31;
+	private static final int VERSION = 2;
+	
+	//header: magic, version, hash of the discretisation spec, rows, layout name length and up to LAYOUT_NAME_BYTES of name
+	private static final int LAYOUT_NAME_BYTES = 44;
+	private static final int HEADER_BYTES = 64;
+	
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int rows;
+	
+	//byte offset of the attempt counts
+	private int attemptsOffset;
+	
+	
+	/**
+	 * Attach to a mapped table, creating and zeroing it if the file does not exist yet.
+	 * 
+	 * @param fileName			file of the table
+	 * @param spec				bins of each dimension of the discrete state
+	 * @param layoutName		name of the StateLayout
+	 * @param rows				number of rows, including the terminal state
+	 * @throws IOException		if the file exists with another shape or cannot be mapped
+	 */
+	public MappedQTable(String fileName, DiscretizationSpec spec, String layoutName, int rows) throws IOException
+	{
+		int specHash = spec.hashCode();
+		
+		long size = HEADER_BYTES + (long)(rows)*3*(8+4);
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Q-table of " + rows + " rows is too large to map");
+		
+		this.rows = rows;
+		this.attemptsOffset = HEADER_BYTES + rows*3*8;
+		
+		byte [] layoutBytes = layoutName.getBytes(StandardCharsets.US_ASCII);
+		if (layoutBytes.length > LAYOUT_NAME_BYTES)
+			throw new IOException("Layout name too long:  " + layoutName);
+		
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		//only one process at a time may create or check the header
+		FileLock lock = channel.lock();
+		try
+		{
+			boolean created = channel.size() == 0;
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.nativeOrder());
+			
+			if (created)
+			{
+				buffer.putInt(4, VERSION);
+				buffer.putInt(8, specHash);
+				buffer.putInt(12, rows);
+				buffer.putInt(16, layoutBytes.length);
+				for (int i = 0; i < layoutBytes.length; i++)
+					buffer.put(20+i, layoutBytes[i]);
+				
+				//magic last, so a half-created file is never taken for a table
+				buffer.putInt(0, MAGIC);
+				buffer.force();
+			}
+			else
+				checkHeader(fileName, specHash, layoutName, rows);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+		finally
+		{
+			if (lock.isValid())
+				lock.release();
+		}
+	}
+	
+	
+	/**
+	 * Make sure an existing file holds a table of the expected shape.
+	 */
+	private void checkHeader(String fileName, int specHash, String layoutName, int rows) throws IOException
+	{
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException(fileName + " is not a mapped Q-table");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported mapped Q-table version " + buffer.getInt(4) + " in " + fileName);
+		
+		int nameLength = Math.min(buffer.getInt(16), LAYOUT_NAME_BYTES);
+		byte [] name = new byte[nameLength];
+		for (int i = 0; i < nameLength; i++)
+			name[i] = buffer.get(20+i);
+		String fileLayout = new String(name, StandardCharsets.US_ASCII);
+		
+		if (buffer.getInt(8) != specHash || buffer.getInt(12) != rows || !fileLayout.equals(layoutName))
+		{
+			throw new IOException(fileName + " holds a table with another discretisation or with " 
+					+ buffer.getInt(12) + " rows and layout " + fileLayout);
+		}
+	}
+	
+	
+	@Override
+	public int rows()
+	{
+		return rows;
+	}
+	
+	
+	@Override
+	public double utility(int stateRow, int action)
+	{
+		return buffer.getDouble(HEADER_BYTES + (stateRow*3+action)*8);
+	}
+	
+	
+	@Override
+	public void setUtility(int stateRow, int action, double value)
+	{
+		buffer.putDouble(HEADER_BYTES + (stateRow*3+action)*8, value);
+	}
+	
+	
+	@Override
+	public int attempts(int stateRow, int action)
+	{
+		return buffer.getInt(attemptsOffset + (stateRow*3+action)*4);
+	}
+	
+	
+	@Override
+	public int addAttempt(int stateRow, int action)
+	{
+		int offset = attemptsOffset + (stateRow*3+action)*4;
+		int attempts = buffer.getInt(offset) + 1;
+		buffer.putInt(offset, attempts);
+		return attempts;
+	}
+	
+	
+	@Override
+	public void setAttempts(int stateRow, int action, int attempts)
+	{
+		buffer.putInt(attemptsOffset + (stateRow*3+action)*4, attempts);
+	}
+	
+	
+	/**
+	 * Write the table back to the file and detach from it.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		buffer.force();
+		channel.close();
+	}
+}
@@ -0,0 +1,371 @@
+import java.util.*;
+
+
+/**
+ * Self-check of mirror folding.
+ * 
+ * Checks the three things MirrorFoldedLayout depends on, for every base layout and a few
+ * mirror symmetric discretisations:
+ * 
+ * 		1. a state and its mirror image land on the same table row
+ * 		2. of each pair exactly one is stored mirrored, so a policy on the folded table plays
+ * 		   up in one state where it plays down in the other
+ * 		3. a game flipped upside down, with up and down swapped in every action, follows the
+ * 		   mirror image of the original trajectory and reaches the mirror image discrete states
+ * 
+ * The game check only covers the right paddle:  the bounce randomizer of the flipped game has
+ * to draw the mirror image y-velocities, and it can only tell those draws apart while every
+ * x-velocity draw is accepted, which holds for bounces off the right paddle.
+ * 
+ * Two kinds of ties are counted, not failed.  A ball or paddle exactly on a bin edge falls into
+ * the upper bin in both games, so its discrete state is not mirrored.  The paddle moves in steps
+ * of 0.04 from the middle, so it often sits on an edge, e.g. the middle one with an even number
+ * of paddle bins.  And the two games only agree up to rounding, so a ball on the edge of the
+ * paddle can go either way; such a game is cut short at that step.  For the same reason the
+ * paddle never moves from the threshold where it wraps around.
+ * 
+ * Usage:  java MirrorCheck [-games N] [-seed N]
+ * 
+ * Exits with status 1 if any check fails.
+ */
+public class MirrorCheck
+{
+	private static String [] BASE_LAYOUTS = {"row-major", "velocity-major", "morton"};
+	
+	private static String [] SPECS = {
+			"rows:12 columns:12 paddle:12",
+			"rows:7 columns:9 paddle:5",
+			"rows:0.1,0.3,0.5,0.7,0.9 columns:0.4,0.6,0.75,0.85,0.92,0.97 paddle:0.25,0.5,0.75"
+	};
+	
+	//continuous positions and velocities of the two games may differ by rounding only
+	private static double TOLERANCE = 1e-9;
+	
+	//chance of a random action in the checked games, the paddle follows the ball otherwise
+	private static double RANDOM_ACTION = 0.2;
+	
+	
+	/**
+	 * Main function.
+	 * @param args		optional -games and -seed
+	 */
+	public static void main(String [] args)
+	{
+		int games = 1000;
+		long seed = 42;
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown option:  " + args[i]);
+		}
+		
+		int failures = 0;
+		for (String text : SPECS)
+		{
+			DiscretizationSpec spec = DiscretizationSpec.parse(text, 12);
+			System.out.println("\n" + spec);
+			
+			for (String name : BASE_LAYOUTS)
+			{
+				MirrorFoldedLayout layout = new MirrorFoldedLayout(StateLayout.forName(name, spec), spec);
+				int [] counts = checkStates(layout, spec, new Random(seed));
+				System.out.printf("%-24s %6d states  %6d rows  %6d own images  %d failures%n",
+						layout.name(), counts[0], layout.size(), counts[1], counts[2]);
+				failures += counts[2];
+			}
+			
+			for (int exact = 0; exact < 2; exact++)
+			{
+				GameSession.setPhysics(exact == 1, 1);
+				long [] counts = checkGames(spec, games, seed);
+				System.out.printf("%-24s %6d games  %8d steps  %6d edge ties  %4d cut short  %d failures%n",
+						(exact == 1) ? "flipped games, exact" : "flipped games", games, counts[0], counts[1], counts[3], counts[2]);
+				failures += counts[2];
+			}
+			GameSession.setPhysics(false, 1);
+		}
+		
+		System.out.println("\n" + ((failures == 0) ? "Mirror check passed" : "Mirror check failed:  " + failures + " failures"));
+		if (failures > 0)
+			System.exit(1);
+	}
+	
+	
+	/**
+	 * Check every discrete state against its mirror image, in the folded layout and in the
+	 * greedy play of random utilities on the folded table.
+	 * 
+	 * @param layout		folded layout to check
+	 * @param spec			bins of the discrete state
+	 * @param random		randomizer of the utilities
+	 * @return				{states, states that are their own image, failures}
+	 */
+	private static int [] checkStates(MirrorFoldedLayout layout, DiscretizationSpec spec, Random random)
+	{
+		double [] utilities = new double[layout.size()*3];
+		for (int i = 0; i < utilities.length; i++)
+			utilities[i] = random.nextDouble();
+		
+		int [] counts = new int[3];
+		for (int row = 0; row < spec.rows(); row++)
+		{
+			for (int column = 0; column < spec.columns(); column++)
+			{
+				for (int xVelocity = -1; xVelocity < 2; xVelocity += 2)
+				{
+					for (int yVelocity = -1; yVelocity < 2; yVelocity++)
+					{
+						for (int paddle = 0; paddle < spec.paddles(); paddle++)
+						{
+							DiscreteState state = new DiscreteState(row, column, xVelocity, yVelocity, paddle);
+							DiscreteState image = image(state, spec);
+							counts[0]++;
+							
+							if (index(layout, state) != index(layout, image))
+							{
+								fail(counts, "different rows for " + describe(state) + " and its image");
+								continue;
+							}
+							
+							if (same(state, image))
+							{
+								counts[1]++;
+								if (mirrors(layout, state))
+									fail(counts, "own image " + describe(state) + " is stored mirrored");
+								continue;
+							}
+							
+							if (mirrors(layout, state) == mirrors(layout, image))
+								fail(counts, "both or neither of " + describe(state) + " and its image are stored mirrored");
+							else if (play(layout, utilities, image) != StateLayout.mirrorAction(play(layout, utilities, state)))
+								fail(counts, "up and down are not swapped between " + describe(state) + " and its image");
+						}
+					}
+				}
+			}
+		}
+		
+		return counts;
+	}
+	
+	
+	/**
+	 * Play games next to their flipped copies and compare them after every step.
+	 * 
+	 * @param spec			bins of the discrete state
+	 * @param games			number of games to play
+	 * @param seed			seed of the bounces and actions
+	 * @return				{steps, edge ties, failures, games cut short by a rounding tie}
+	 */
+	private static long [] checkGames(DiscretizationSpec spec, int games, long seed)
+	{
+		long [] counts = new long[4];
+		Random actions = new Random(seed);
+		
+		for (int i = 0; i < games; i++)
+		{
+			GameSession game = new GameSession(spec, false, false, new MirroredBounces(seed+i, false));
+			GameSession flipped = new GameSession(spec, false, false, new MirroredBounces(seed+i, true));
+			flipped.mirrorVertically();
+			
+			while (!game.getGameOver())
+			{
+				double [] frame = game.frameState();
+				int action = (actions.nextDouble() < RANDOM_ACTION) ? actions.nextInt(3) : follow(frame);
+				
+				//rounding decides if a paddle on the threshold of wrapping around moves or wraps
+				if ((action == 0 && Math.abs(frame[2] - 0.76) < TOLERANCE) || (action == 1 && Math.abs(frame[2] - 0.04) < TOLERANCE))
+					action = 2;
+				
+				game.applyAction(action);
+				flipped.applyAction(StateLayout.mirrorAction(action));
+				game.moveBall();
+				flipped.moveBall();
+				
+				boolean hit = game.isHit();
+				boolean flippedHit = flipped.isHit();
+				boolean missed = game.checkMiss();
+				boolean flippedMissed = flipped.checkMiss();
+				counts[0]++;
+				
+				if (hit != flippedHit || missed != flippedMissed || !isMirrorFrame(game.frameState(), flipped.frameState()))
+				{
+					//rounding decides a paddle on its wrap threshold or a ball on the paddle's edge
+					if (isRoundingTie(frame, game.frameState()))
+						counts[3]++;
+					else
+					{
+						counts[2]++;
+						System.out.println("  game " + i + " step " + game.stepsThisGame() + ":  flipped game left the mirrored trajectory");
+					}
+					break;
+				}
+				
+				if (game.getGameOver())
+					break;
+				
+				DiscreteState image = image(game.closestDiscrete(), spec);
+				if (!same(flipped.closestDiscrete(), image))
+				{
+					if (onBinEdge(flipped.frameState(), spec))
+						counts[1]++;
+					else
+					{
+						counts[2]++;
+						System.out.println("  game " + i + " step " + game.stepsThisGame() + ":  " + describe(flipped.closestDiscrete())
+								+ " is not the image of " + describe(game.closestDiscrete()));
+					}
+				}
+			}
+		}
+		
+		return counts;
+	}
+	
+	
+	/**
+	 * Randomizer of the bounces of a game or its flipped copy.  GameSession draws the new
+	 * x-velocity and then the new y-velocity of a bounce.  Draws for the x-velocity are kept
+	 * below 0.5, so a bounce off the right paddle accepts its first draw and the draws alternate.
+	 * The flipped game draws 1-r for the y-velocity, which gives the negated y-velocity.
+	 */
+	@SuppressWarnings("serial")
+	private static class MirroredBounces extends Random
+	{
+		private boolean flipped;
+		private boolean yDraw = false;
+		
+		
+		public MirroredBounces(long seed, boolean flipped)
+		{
+			super(seed);
+			this.flipped = flipped;
+		}
+		
+		
+		@Override
+		public double nextDouble()
+		{
+			double draw = super.nextDouble();
+			yDraw = !yDraw;
+			if (!yDraw)
+				return flipped ? 1-draw : draw;
+			return draw/2;
+		}
+	}
+	
+	
+	/**
+	 * @return		action moving the paddle's middle towards the ball
+	 */
+	private static int follow(double [] frame)
+	{
+		double middle = frame[2] + 0.1;
+		if (Math.abs(frame[1] - middle) < 0.02)
+			return 2;
+		return (frame[1] > middle) ? 0 : 1;
+	}
+	
+	
+	/**
+	 * @return		true if the second frame is the first one flipped upside down
+	 */
+	private static boolean isMirrorFrame(double [] frame, double [] flipped)
+	{
+		return Math.abs(frame[0] - flipped[0]) < TOLERANCE
+				&& Math.abs(1 - frame[1] - flipped[1]) < TOLERANCE
+				&& Math.abs(0.8 - frame[2] - flipped[2]) < TOLERANCE
+				&& frame[5] == flipped[5] && frame[6] == flipped[6];
+	}
+	
+	
+	/**
+	 * @param before		frame of the original game before the step
+	 * @param after			frame of the original game after the step
+	 * @return				true if the paddle started the step on a threshold where it wraps around,
+	 * 						or the ball ended it on an edge of the paddle
+	 */
+	private static boolean isRoundingTie(double [] before, double [] after)
+	{
+		double paddle = after[2];
+		return Math.abs(before[2] - 0.04) < TOLERANCE || Math.abs(before[2] - 0.76) < TOLERANCE
+				|| Math.abs(after[1] - paddle) < TOLERANCE || Math.abs(after[1] - paddle - 0.2) < TOLERANCE;
+	}
+	
+	
+	/**
+	 * @return		true if the ball row or the paddle of a frame lies on the edge of a bin
+	 */
+	private static boolean onBinEdge(double [] frame, DiscretizationSpec spec)
+	{
+		return spec.row(frame[1] - TOLERANCE) != spec.row(frame[1] + TOLERANCE)
+				|| spec.paddle(frame[2] - TOLERANCE, 0.8) != spec.paddle(frame[2] + TOLERANCE, 0.8);
+	}
+	
+	
+	/**
+	 * @return		discrete state of the board flipped upside down
+	 */
+	private static DiscreteState image(DiscreteState state, DiscretizationSpec spec)
+	{
+		return new DiscreteState(spec.rows()-1-state.row, state.column, state.xVelocity,
+				-state.yVelocity, spec.paddles()-1-state.paddlePosition);
+	}
+	
+	
+	/**
+	 * @return		greedy action played in a state, with up and down swapped if it is stored mirrored
+	 */
+	private static int play(MirrorFoldedLayout layout, double [] utilities, DiscreteState state)
+	{
+		int base = index(layout, state)*3;
+		int best = 0;
+		for (int i = 1; i < 3; i++)
+		{
+			if (utilities[base+i] > utilities[base+best])
+				best = i;
+		}
+		return mirrors(layout, state) ? StateLayout.mirrorAction(best) : best;
+	}
+	
+	
+	private static int index(StateLayout layout, DiscreteState state)
+	{
+		return layout.index(state.row, state.column, state.xVelocity, state.yVelocity, state.paddlePosition);
+	}
+	
+	
+	private static boolean mirrors(StateLayout layout, DiscreteState state)
+	{
+		return layout.mirrors(state.row, state.column, state.xVelocity, state.yVelocity, state.paddlePosition);
+	}
+	
+	
+	private static boolean same(DiscreteState one, DiscreteState other)
+	{
+		return one.row == other.row && one.column == other.column && one.xVelocity == other.xVelocity
+				&& one.yVelocity == other.yVelocity && one.paddlePosition == other.paddlePosition;
+	}
+	
+	
+	private static String describe(DiscreteState state)
+	{
+		return "(" + state.row + ", " + state.column + ", " + state.xVelocity + ", " + state.yVelocity + ", " + state.paddlePosition + ")";
+	}
+	
+	
+	/**
+	 * Print a failure and count it.
+	 */
+	private static void fail(int [] counts, String message)
+	{
+		counts[2]++;
+		if (counts[2] <= 10)
+			System.out.println("  " + message);
+	}
+}
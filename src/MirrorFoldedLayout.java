@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+
+/**
+ * Layout folding each state and its vertical mirror image onto one table row.
+ * 
+ * The game is symmetric under flipping the board upside down: mirroring the ball row, the
+ * y-velocity and the paddle position, and swapping the up and down actions, gives an equally
+ * good play.  Of each pair of mirror images only the one with the lower row in the base layout
+ * is stored; the other is looked up through it and mirrors() tells the caller to swap up and
+ * down.  The table holds about half the rows of the base layout, and every update trains both
+ * mirror images.
+ * 
+ * States that are their own mirror image, on the middle row and paddle position with a level
+ * ball, only exist with odd numbers of row and paddle bins.  Their up and down actions are
+ * still learned separately.
+ * 
+ * MirrorCheck checks the folding of every layout against the game flipped upside down.
+ */
+public class MirrorFoldedLayout implements StateLayout
+{
+	/**
+	 * Prefix of the names of folded layouts.
+	 */
+	public static final String PREFIX = "mirror-";
+	
+	private StateLayout base;
+	
+	//row in the folded table and mirror flag by row of the base layout, -1 in the gaps of the base layout
+	private int [] rows;
+	private boolean [] mirrored;
+	
+	private int size;
+	
+	
+	/**
+	 * @param base		layout of the states before folding
+	 * @param spec		bins of the discrete state, must be symmetric in the rows and paddle positions
+	 * @throws IllegalArgumentException		if the spec is not symmetric
+	 */
+	public MirrorFoldedLayout(StateLayout base, DiscretizationSpec spec)
+	{
+		if (!spec.isMirrorSymmetric())
+			throw new IllegalArgumentException("Discretisation is not mirror symmetric:  " + spec);
+		
+		this.base = base;
+		this.rows = new int[base.size()];
+		this.mirrored = new boolean[base.size()];
+		Arrays.fill(rows, -1);
+		
+		//mark the states stored as their mirror image
+		forEachState(spec, true);
+		
+		//number the stored states in the order of the base layout to keep its locality
+		for (int i = 0; i < rows.length; i++)
+		{
+			if (rows[i] == 0)
+				rows[i] = size++;
+		}
+		
+		//point the mirrored states at their mirror image
+		forEachState(spec, false);
+	}
+	
+	
+	/**
+	 * One pass over all discrete states.  The first pass marks stored states with row 0 and
+	 * mirrored ones with their flag, the second gives mirrored states the row of their image.
+	 */
+	private void forEachState(DiscretizationSpec spec, boolean marking)
+	{
+		for (int row = 0; row < spec.rows(); row++)
+		{
+			for (int column = 0; column < spec.columns(); column++)
+			{
+				for (int xVelocity = -1; xVelocity < 2; xVelocity += 2)
+				{
+					for (int yVelocity = -1; yVelocity < 2; yVelocity++)
+					{
+						for (int paddle = 0; paddle < spec.paddles(); paddle++)
+						{
+							int own = base.index(row, column, xVelocity, yVelocity, paddle);
+							int image = base.index(spec.rows()-1-row, column, xVelocity, -yVelocity, spec.paddles()-1-paddle);
+							
+							if (marking)
+							{
+								mirrored[own] = image < own;
+								if (!mirrored[own])
+									rows[own] = 0;
+							}
+							else if (mirrored[own])
+								rows[own] = rows[image];
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	@Override
+	public int index(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		return rows[base.index(row, column, xVelocity, yVelocity, paddle)];
+	}
+	
+	
+	@Override
+	public boolean mirrors(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		return mirrored[base.index(row, column, xVelocity, yVelocity, paddle)];
+	}
+	
+	
+	@Override
+	public int size()
+	{
+		return size;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return PREFIX + base.name();
+	}
+}
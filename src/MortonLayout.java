@@ -0,0 +1,87 @@
+
+/**
+ * Velocity-major layout with the ball position stored in Morton (Z-order).
+ * 
+ * Interleaving the bits of row and column keeps positions that are close on the board
+ * close in the table, whichever direction the ball travels.  The Z-order curve covers
+ * a power-of-two square, so for other numbers of rows and columns some table rows are never used.
+ */
+public class MortonLayout implements StateLayout 
+{
+	private int paddles;
+	
+	//side of the power-of-two square covering the board
+	private int side;
+	
+	
+	/**
+	 * @param maxDiscrete		number of discrete row/column/paddle positions
+	 */
+	public MortonLayout(int maxDiscrete)
+	{
+		this(DiscretizationSpec.uniform(maxDiscrete));
+	}
+	
+	
+	/**
+	 * @param spec		bins of each dimension of the state
+	 */
+	public MortonLayout(DiscretizationSpec spec)
+	{
+		this.paddles = spec.paddles();
+		
+		this.side = 1;
+		while (this.side < Math.max(spec.rows(), spec.columns()))
+			this.side *= 2;
+	}
+	
+	
+	@Override
+	public int index(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		int velocityBlock = StateLayout.velocityClass(xVelocity, yVelocity)*side*side;
+		
+		return (velocityBlock + interleave(row, column))*paddles + paddle;
+	}
+	
+	
+	@Override
+	public int size()
+	{
+		return VELOCITY_CLASSES*side*side*paddles;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return "morton";
+	}
+	
+	
+	/**
+	 * Interleave the bits of two coordinates, row bits in the odd positions.
+	 * 
+	 * @param row		discrete row, below 2^16
+	 * @param column	discrete column, below 2^16
+	 * @return			Z-order code of the position
+	 */
+	public static int interleave(int row, int column)
+	{
+		return (spread(row) << 1) | spread(column);
+	}
+	
+	
+	/**
+	 * Spread the lower 16 bits of a value so that there is a zero bit between each of them.
+	 */
+	private static int spread(int value)
+	{
+		value &= 0x0000FFFF;
+		value = (value | (value << 8)) & 0x00FF00FF;
+		value = (value | (value << 4)) & 0x0F0F0F0F;
+		value = (value | (value << 2)) & 0x33333333;
+		value = (value | (value << 1)) & 0x55555555;
+		return value;
+	}
+}
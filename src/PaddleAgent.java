@@ -0,0 +1,56 @@
+
+/**
+ * Decisions and learning of the paddles in a game played by GameLoop.
+ * 
+ * In self-play both paddles share one agent.  The left paddle sees the mirrored board of
+ * GameSession.closestDiscreteLeft, so its rows and actions mean the same as the right paddle's.
+ * Agents that only play, like PolicySnapshot, leave the learning methods alone.
+ */
+public interface PaddleAgent
+{
+	/**
+	 * Choose the action to take from a state.
+	 * 
+	 * @param stateRow		row of table best representing current game state
+	 * @param state			the discrete state itself
+	 * @return				action for the table row (0 up, 1 down, 2 stay), the loop swaps up and
+	 * 						down if the row holds the state's mirror image
+	 */
+	public int chooseAction(int stateRow, DiscreteState state);
+	
+	
+	/**
+	 * Learn from a transition, with the reward lagged by one decision.
+	 * 
+	 * @param previousState		row of the state the action was taken from
+	 * @param previousOption	action taken
+	 * @param reward			reward of the action
+	 * @param currentState		row of the state the action led to, possibly the terminal state
+	 */
+	public default void learn(int previousState, int previousOption, int reward, int currentState)
+	{
+	}
+	
+	
+	/**
+	 * Learn from the last action of a paddle whose game was ended by the other paddle missing
+	 * in self-play, see Learner.updateWithoutLoss.
+	 * 
+	 * @param previousState		row of the state the action was taken from
+	 * @param previousOption	action taken
+	 * @param reward			reward of the action
+	 */
+	public default void learnWithoutLoss(int previousState, int previousOption, int reward)
+	{
+	}
+	
+	
+	/**
+	 * Called after every simulated step, e.g. to draw the game.
+	 * 
+	 * @param game		the game being played
+	 */
+	public default void afterStep(GameSession game)
+	{
+	}
+}
@@ -0,0 +1,49 @@
+import jdk.jfr.*;
+
+
+/**
+ * JFR event for a ball bounced by a paddle.  Disabled unless a recording enables it.
+ */
+@Name("pong.PaddleHit")
+@Label("Paddle Hit")
+@Category({"Pong", "Games"})
+@Description("Ball bounced by a paddle")
+@Enabled(false)
+@StackTrace(false)
+public class PaddleHitEvent extends Event 
+{
+	@Label("Paddle")
+	public String paddle;
+	
+	@Label("Ball Y")
+	public double ballY;
+	
+	@Label("Paddle Position")
+	public double paddlePosition;
+	
+	@Label("Bounces")
+	@Description("Bounces of the game including this one")
+	public int bounces;
+	
+	
+	/**
+	 * Commit an event if the event type is enabled.
+	 * 
+	 * @param paddle			"right" or "left"
+	 * @param ballY				y-position of the ball
+	 * @param paddlePosition	bottom of the paddle
+	 * @param bounces			bounces of the game including this one
+	 */
+	public static void emit(String paddle, double ballY, double paddlePosition, int bounces)
+	{
+		PaddleHitEvent event = new PaddleHitEvent();
+		if (!event.isEnabled())
+			return;
+		
+		event.paddle = paddle;
+		event.ballY = ballY;
+		event.paddlePosition = paddlePosition;
+		event.bounces = bounces;
+		event.commit();
+	}
+}
@@ -0,0 +1,22 @@
+import jdk.jfr.*;
+
+
+/**
+ * JFR event spanning a phase of the run: training, testing or visual games.  A new event
+ * begins whenever Driver.playGame is called in another phase.  Disabled unless a recording
+ * enables it.
+ */
+@Name("pong.Phase")
+@Label("Phase")
+@Category({"Pong", "Games"})
+@Description("Consecutive games played in one phase of the run")
+@Enabled(false)
+@StackTrace(false)
+public class PhaseEvent extends Event 
+{
+	@Label("Phase")
+	public String phase;
+	
+	@Label("Games")
+	public int games;
+}
@@ -0,0 +1,658 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+ * Distils the greedy policy of a Q-table into a decision tree and generates a Java class
+ * evaluating the tree with nested ifs, so the policy runs without any table.
+ * 
+ * Every discrete state is labelled with the greedy action of the table and weighted by its
+ * attempts, so the tree spends its splits on the states that are actually played.  Actions
+ * whose utility is within the tolerance of the greedy one are tied with it, and the tree may
+ * play any of them:  many states have never told their actions apart, and forcing the table's
+ * pick there costs splits without changing the play.  A tree copying the table well on the
+ * table's states can still lead the game into states the table never saw, so after the first
+ * fit the tree plays rollout games and the states it visits are added to the weights before
+ * fitting again (dataset aggregation).  Splits test one feature against a threshold: the
+ * fields of DiscreteState plus the ball row minus the paddle position, which lets "move toward
+ * the ball" be said with few splits.  Trees of growing depth are fitted with weighted Gini
+ * impurity until the weighted agreement with the table reaches the fidelity target or the
+ * depth limit.
+ * 
+ * The utilities far from the paddle are tiny, so the tolerance has to be too:  larger ones
+ * give smaller trees that agree as well by this measure but lose far more games.
+ * 
+ * The tree is sized for fidelity rather than for a few hundred bytes.  A tree that small
+ * does not play this game:  with tables trained by Driver's defaults, trees of depth 3 and
+ * less never return the ball, depth 5 and 6 (about 170 to 350 bytes of code) score 30 to 50%
+ * of the table's test average, and only depth 11 and 12, 3 to 4 KB of code, reliably reach
+ * 80 to 90%.  The default fidelity target therefore leads to depth 11 or 12 with about 900 nodes, and
+ * -depth caps the tree where size matters more.  The report lists this trade-off for the
+ * table at hand:  for every depth up to the written tree, the nodes, the bytes of code of the
+ * generated method, the agreement and the test average.
+ * 
+ * The report also gives the agreement of the written tree with the table policy, weighted by
+ * visits and over the visited states, and the test average of the table and the tree.  All
+ * games are played with Driver's step loop and the same seeded bounces.
+ * 
+ * Usage:  java PolicyDistiller [-checkpoint file] [-train games] [-fidelity fraction] [-depth max]
+ * 							[-tolerance utility] [-rounds N] [-rollouts games] [-test games]
+ * 							[-seed S] [-output file]
+ * 
+ * Without a checkpoint a table is trained with Driver's settings first.  The class name of the
+ * generated source is the output file name without ".java".
+ */
+public class PolicyDistiller
+{
+	private static int DEFAULT_TRAINING_GAMES = 200000;
+	private static double DEFAULT_FIDELITY = 0.9;
+	private static int DEFAULT_MAX_DEPTH = 12;
+	private static int DEFAULT_TEST_GAMES = 5000;
+	private static int DEFAULT_ROUNDS = 4;
+	private static int DEFAULT_ROLLOUT_GAMES = 2000;
+	private static double DEFAULT_TOLERANCE = 1e-9;
+	private static long DEFAULT_SEED = 42;
+	private static String DEFAULT_OUTPUT = "DistilledPolicy.java";
+	
+	//names of the features, as parameters of the generated evaluator
+	private static final String [] FEATURES = {"row", "column", "xVelocity", "yVelocity", "paddle", "row - paddle"};
+	
+	//bytes of bytecode loading each feature from the parameters of the generated method
+	private static final int [] FEATURE_LOAD_BYTES = {1, 1, 1, 1, 2, 4};
+	
+	//position of the table's action and of the mask of acceptable actions after the features
+	private static final int ACTION = FEATURES.length;
+	private static final int ACCEPTED = FEATURES.length+1;
+	
+	//states labelled by the table, {features..., action, accepted} and their weights
+	private List<int []> samples = new ArrayList<int []>();
+	private List<Double> weights = new ArrayList<Double>();
+	private double totalWeight = 0;
+	
+	private DiscretizationSpec spec;
+	
+	//randomizer of the bounces of the rollout games
+	private Random bounces;
+	
+	
+	/**
+	 * Node of the tree, a leaf if feature is -1.
+	 */
+	private static class Node
+	{
+		private int feature = -1;
+		private int threshold;
+		private Node low;
+		private Node high;
+		private int action;
+		
+		private int size()
+		{
+			return (feature < 0) ? 1 : 1 + low.size() + high.size();
+		}
+		
+		private int depth()
+		{
+			return (feature < 0) ? 0 : 1 + Math.max(low.depth(), high.depth());
+		}
+		
+		/**
+		 * @return		bytes of bytecode of the generated method for this subtree: loading the feature,
+		 * 				pushing the threshold and a 3-byte compare and branch per split, a constant
+		 * 				and a return per leaf
+		 */
+		private int codeBytes()
+		{
+			if (feature < 0)
+				return 2;
+			return FEATURE_LOAD_BYTES[feature] + constantBytes(threshold) + 3 + low.codeBytes() + high.codeBytes();
+		}
+		
+		private int act(int [] features)
+		{
+			if (feature < 0)
+				return action;
+			return (features[feature] <= threshold) ? low.act(features) : high.act(features);
+		}
+	}
+	
+	
+	/**
+	 * Player of a tree in GameLoop.  The tree acts on the state itself, so its action is swapped
+	 * into the mirror image when the state's row holds that.
+	 */
+	private static class TreeAgent implements PaddleAgent
+	{
+		private Node tree;
+		
+		private TreeAgent(Node tree)
+		{
+			this.tree = tree;
+		}
+		
+		@Override
+		public int chooseAction(int stateRow, DiscreteState state)
+		{
+			int action = tree.act(features(state));
+			return Driver.isMirrored(state) ? StateLayout.mirrorAction(action) : action;
+		}
+	}
+	
+	
+	/**
+	 * Main function.
+	 * @param args		options, see the class documentation
+	 * @throws Exception
+	 */
+	public static void main(String [] args) throws Exception
+	{
+		String checkpoint = null;
+		int trainingGames = DEFAULT_TRAINING_GAMES;
+		double fidelity = DEFAULT_FIDELITY;
+		int maxDepth = DEFAULT_MAX_DEPTH;
+		int testGames = DEFAULT_TEST_GAMES;
+		int rounds = DEFAULT_ROUNDS;
+		int rolloutGames = DEFAULT_ROLLOUT_GAMES;
+		double tolerance = DEFAULT_TOLERANCE;
+		long seed = DEFAULT_SEED;
+		String output = DEFAULT_OUTPUT;
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-checkpoint"))
+				checkpoint = args[++i];
+			else if (args[i].equals("-train"))
+				trainingGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-fidelity"))
+				fidelity = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-depth"))
+				maxDepth = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-test"))
+				testGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-rounds"))
+				rounds = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-rollouts"))
+				rolloutGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-tolerance"))
+				tolerance = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-output"))
+				output = args[++i];
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		
+		if (maxDepth < 1)
+			throw new IllegalArgumentException("-depth must be at least 1:  " + maxDepth);
+		if (rounds < 0)
+			throw new IllegalArgumentException("-rounds must not be negative:  " + rounds);
+		if (rounds > 0 && rolloutGames < 1)
+			throw new IllegalArgumentException("-rollouts must be at least 1 with rounds:  " + rolloutGames);
+		if (testGames < 1)
+			throw new IllegalArgumentException("-test must be at least 1:  " + testGames);
+		if (checkpoint == null && trainingGames < 0)
+			throw new IllegalArgumentException("-train must not be negative:  " + trainingGames);
+		if (tolerance < 0)
+			throw new IllegalArgumentException("-tolerance must not be negative:  " + tolerance);
+		
+		Driver.setSeed(seed);
+		Driver.initializeTable();
+		if (checkpoint != null)
+			Driver.loadCheckpoint(checkpoint);
+		else
+			Driver.trainGames(trainingGames);
+		
+		PolicySnapshot table = new PolicySnapshot(Driver.scoreBoard);
+		PolicyDistiller distiller = new PolicyDistiller(table, Driver.getDiscretization(), tolerance);
+		
+		Node tree = null;
+		double agreement = 0;
+		for (int round = 0; round <= rounds; round++)
+		{
+			//the states the last tree led into, so the next tree learns to recover from its own mistakes
+			if (round > 0)
+				distiller.addRollouts(tree, rolloutGames);
+			
+			for (int depth = 1; depth <= maxDepth; depth++)
+			{
+				tree = distiller.fit(depth);
+				agreement = distiller.agreement(tree, false);
+				if (agreement >= fidelity)
+					break;
+			}
+			System.out.printf(Locale.ROOT, "Round %d:  depth %2d, %5d nodes, agreement %.4f%n", round, tree.depth(),
+					tree.size(), agreement);
+		}
+		
+		//what the fidelity costs:  the best tree of every depth up to the one written
+		double tableAverage = testAverage(table, null, testGames, seed);
+		System.out.printf(Locale.ROOT, "%nDepth  nodes  code bytes  agreement  test average (table %.2f)%n", tableAverage);
+		for (int depth = 1; depth <= tree.depth(); depth++)
+		{
+			Node shallow = distiller.fit(depth);
+			System.out.printf(Locale.ROOT, "%5d  %5d  %10d  %9.4f  %12.2f%n", depth, shallow.size(), shallow.codeBytes(),
+					distiller.agreement(shallow, false), testAverage(table, shallow, testGames, seed));
+		}
+		
+		String className = Paths.get(output).getFileName().toString().replaceFirst("\\.java$", "");
+		Files.write(Paths.get(output), generate(tree, className).getBytes(StandardCharsets.UTF_8));
+		
+		System.out.printf(Locale.ROOT, "%nWrote %s:  depth %d, %d nodes, %d code bytes, agreement with the table %.4f weighted "
+				+ "by visits, %.4f over visited states%n", output, tree.depth(), tree.size(), tree.codeBytes(), agreement, 
+				distiller.agreement(tree, true));
+		if (agreement < fidelity)
+			System.out.println("Fidelity target " + fidelity + " not reached within depth " + maxDepth);
+		
+		System.out.printf(Locale.ROOT, "Test average over %d games:  table %.2f, tree %.2f%n", testGames,
+				tableAverage, testAverage(table, tree, testGames, seed));
+	}
+	
+	
+	/**
+	 * Label every discrete state with the greedy action of the table and the actions whose
+	 * utility is within the tolerance of it.
+	 * 
+	 * @param table			greedy policy to distil
+	 * @param spec			bins of the discrete state
+	 * @param tolerance		utility below the greedy action's at which an action still counts as tied
+	 */
+	public PolicyDistiller(PolicySnapshot table, DiscretizationSpec spec, double tolerance)
+	{
+		this.spec = spec;
+		this.bounces = Driver.newBounceRandom();
+		for (int a = 0; a < spec.rows(); a++)
+		{
+			for (int b = 0; b < spec.columns(); b++)
+			{
+				for (int c = -1; c < 2; c += 2)
+				{
+					for (int d = -1; d < 2; d++)
+					{
+						for (int e = 0; e < spec.paddles(); e++)
+						{
+							DiscreteState state = new DiscreteState(a, b, c, d, e);
+							int row = Driver.getIntegerRepState(state);
+							
+							double attempts = 0;
+							for (int i = 0; i < 3; i++)
+								attempts += Driver.scoreBoard.attempts(row, i);
+							
+							int [] sample = Arrays.copyOf(features(state), FEATURES.length+2);
+							sample[ACTION] = table.action(state);
+							sample[ACCEPTED] = acceptedActions(row, Driver.isMirrored(state), tolerance);
+							samples.add(sample);
+							weights.add(attempts);
+							totalWeight += attempts;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * @param row			row of the table
+	 * @param mirrored		true if the row stores the state's mirror image
+	 * @param tolerance		utility below the greedy action's at which an action still counts as tied
+	 * @return				bit mask of the actions tied with the greedy action of the row
+	 */
+	private static int acceptedActions(int row, boolean mirrored, double tolerance)
+	{
+		QTable table = Driver.scoreBoard;
+		double best = table.utility(row, Driver.greedyAction(table, row));
+		
+		int accepted = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.utility(row, i) >= best - tolerance)
+				accepted |= 1 << (mirrored ? StateLayout.mirrorAction(i) : i);
+		}
+		return accepted;
+	}
+	
+	
+	/**
+	 * Play games with a tree and add the states it decides in to the weights, scaled to the same
+	 * total weight as the attempts of the table.
+	 * 
+	 * @param tree		tree to play
+	 * @param games		number of games
+	 */
+	private void addRollouts(Node tree, int games)
+	{
+		final double [] visits = new double[samples.size()];
+		final long [] decisions = {0};
+		GameLoop loop = Driver.getGameLoop();
+		
+		PaddleAgent agent = new TreeAgent(tree)
+		{
+			@Override
+			public int chooseAction(int stateRow, DiscreteState state)
+			{
+				visits[sampleIndex(state)]++;
+				decisions[0]++;
+				return super.chooseAction(stateRow, state);
+			}
+		};
+		
+		for (int i = 0; i < games; i++)
+			loop.play(loop.newGame(false, bounces), agent);
+		
+		double scale = (decisions[0] == 0) ? 0 : totalWeight/decisions[0];
+		for (int i = 0; i < visits.length; i++)
+			weights.set(i, weights.get(i) + scale*visits[i]);
+	}
+	
+	
+	/**
+	 * @return		index of a state in the samples, in the order the constructor enumerates them
+	 */
+	private int sampleIndex(DiscreteState state)
+	{
+		return (((state.row*spec.columns() + state.column)*2 + (state.xVelocity+1)/2)*3 + state.yVelocity+1)*spec.paddles()
+				+ state.paddlePosition;
+	}
+	
+	
+	/**
+	 * @return		features of a state in the order of FEATURES
+	 */
+	private static int [] features(DiscreteState state)
+	{
+		return new int[] {state.row, state.column, state.xVelocity, state.yVelocity, state.paddlePosition,
+				state.row - state.paddlePosition};
+	}
+	
+	
+	/**
+	 * Fit a tree to the labelled states.
+	 * 
+	 * @param maxDepth		depth limit of the tree
+	 * @return				root of the tree
+	 */
+	private Node fit(int maxDepth)
+	{
+		List<Integer> all = new ArrayList<Integer>();
+		for (int i = 0; i < samples.size(); i++)
+			all.add(i);
+		return grow(all, maxDepth);
+	}
+	
+	
+	/**
+	 * Grow a subtree over some samples, splitting on the feature and threshold that lower the
+	 * weighted Gini impurity most.  A state with tied actions counts for the tied action most
+	 * accepted in the subtree, so ties go along with their neighbours instead of forcing splits.
+	 */
+	private Node grow(List<Integer> indices, int depth)
+	{
+		double [] accepting = acceptingWeights(indices);
+		Node node = new Node();
+		node.action = argmax(accepting);
+		
+		double total = 0;
+		for (int i : indices)
+			total += weights.get(i);
+		if (depth == 0 || accepting[node.action] >= total)
+			return node;
+		
+		//action each sample counts for, the accepted one with the most weight here
+		Map<Integer, Integer> labels = new HashMap<Integer, Integer>();
+		double [] counts = new double[3];
+		for (int i : indices)
+		{
+			int label = label(samples.get(i), accepting);
+			labels.put(i, label);
+			counts[label] += weights.get(i);
+		}
+		
+		double bestImpurity = gini(counts)*total;
+		for (int feature = 0; feature < FEATURES.length; feature++)
+		{
+			//weights of each action by feature value, in increasing order of value
+			TreeMap<Integer, double []> byValue = new TreeMap<Integer, double []>();
+			for (int i : indices)
+			{
+				int [] sample = samples.get(i);
+				double [] valueCounts = byValue.get(sample[feature]);
+				if (valueCounts == null)
+				{
+					valueCounts = new double[3];
+					byValue.put(sample[feature], valueCounts);
+				}
+				valueCounts[labels.get(i)] += weights.get(i);
+			}
+			
+			double [] low = new double[3];
+			for (Map.Entry<Integer, double []> entry : byValue.headMap(byValue.lastKey()).entrySet())
+			{
+				double [] high = new double[3];
+				for (int i = 0; i < 3; i++)
+				{
+					low[i] += entry.getValue()[i];
+					high[i] = counts[i] - low[i];
+				}
+				
+				double lowTotal = low[0] + low[1] + low[2];
+				double impurity = gini(low)*lowTotal + gini(high)*(total - lowTotal);
+				if (impurity < bestImpurity - 1e-9)
+				{
+					bestImpurity = impurity;
+					node.feature = feature;
+					node.threshold = entry.getKey();
+				}
+			}
+		}
+		
+		if (node.feature < 0)
+			return node;
+		
+		List<Integer> lowIndices = new ArrayList<Integer>();
+		List<Integer> highIndices = new ArrayList<Integer>();
+		for (int i : indices)
+		{
+			if (samples.get(i)[node.feature] <= node.threshold)
+				lowIndices.add(i);
+			else
+				highIndices.add(i);
+		}
+		
+		node.low = grow(lowIndices, depth-1);
+		node.high = grow(highIndices, depth-1);
+		
+		//a split whose sides play the same action is no split
+		if (node.low.feature < 0 && node.high.feature < 0 && node.low.action == node.high.action)
+			node.feature = -1;
+		
+		return node;
+	}
+	
+	
+	/**
+	 * @param tree			tree to check
+	 * @param unweighted	count every visited state once instead of weighting by visits
+	 * @return				fraction of the weight where the tree plays the action of the table, or
+	 * 						one tied with it
+	 */
+	private double agreement(Node tree, boolean unweighted)
+	{
+		double agreeing = 0;
+		double total = 0;
+		for (int i = 0; i < samples.size(); i++)
+		{
+			double weight = weights.get(i);
+			if (unweighted)
+				weight = (weight > 0) ? 1 : 0;
+			
+			int [] sample = samples.get(i);
+			total += weight;
+			if ((sample[ACCEPTED] & (1 << tree.act(sample))) != 0)
+				agreeing += weight;
+		}
+		
+		return (total == 0) ? 0 : agreeing/total;
+	}
+	
+	
+	/**
+	 * @return		summed weights of the samples accepting each action
+	 */
+	private double [] acceptingWeights(List<Integer> indices)
+	{
+		double [] counts = new double[3];
+		for (int i : indices)
+		{
+			int [] sample = samples.get(i);
+			for (int action = 0; action < 3; action++)
+			{
+				if ((sample[ACCEPTED] & (1 << action)) != 0)
+					counts[action] += weights.get(i);
+			}
+		}
+		return counts;
+	}
+	
+	
+	/**
+	 * @return		accepted action of a sample with the most accepting weight, the table's on a tie
+	 */
+	private static int label(int [] sample, double [] accepting)
+	{
+		int label = sample[ACTION];
+		for (int action = 0; action < 3; action++)
+		{
+			if ((sample[ACCEPTED] & (1 << action)) != 0 && accepting[action] > accepting[label])
+				label = action;
+		}
+		return label;
+	}
+	
+	
+	private static double gini(double [] counts)
+	{
+		double total = counts[0] + counts[1] + counts[2];
+		if (total == 0)
+			return 0;
+		
+		double impurity = 1;
+		for (double count : counts)
+			impurity -= (count/total)*(count/total);
+		return impurity;
+	}
+	
+	
+	/**
+	 * @return		bytes of bytecode pushing an int constant
+	 */
+	private static int constantBytes(int value)
+	{
+		if (value >= -1 && value <= 5)
+			return 1;
+		return (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) ? 2 : 3;
+	}
+	
+	
+	private static int argmax(double [] counts)
+	{
+		int best = 0;
+		for (int i = 1; i < counts.length; i++)
+		{
+			if (counts[i] > counts[best])
+				best = i;
+		}
+		return best;
+	}
+	
+	
+	/**
+	 * Average bounces of greedy games with the table policy, or with the tree if one is given,
+	 * played with Driver's step loop.  Games with the same seed get the same bounces as long as
+	 * the policies play alike.
+	 */
+	private static double testAverage(PolicySnapshot table, Node tree, int games, long seed)
+	{
+		GameLoop loop = Driver.getGameLoop();
+		PaddleAgent agent = (tree == null) ? table : new TreeAgent(tree);
+		Random random = new Random(seed);
+		
+		long bounces = 0;
+		for (int i = 0; i < games; i++)
+		{
+			GameSession game = loop.newGame(false, random);
+			loop.play(game, agent);
+			bounces += game.bouncesThisGame();
+		}
+		
+		return (double)(bounces)/games;
+	}
+	
+	
+	/**
+	 * Java source of a class evaluating the tree.
+	 */
+	private static String generate(Node tree, String className)
+	{
+		StringBuilder source = new StringBuilder();
+		source.append("\n/**\n");
+		source.append(" * Greedy policy distilled from a Q-table by PolicyDistiller, ").append(tree.size()).append(" nodes.\n");
+		source.append(" * Generated, do not edit.\n");
+		source.append(" */\n");
+		source.append("public class ").append(className).append(" \n{\n");
+		source.append("\t/**\n");
+		source.append("\t * @param row\t\t\t\tdiscrete ball row\n");
+		source.append("\t * @param column\t\t\tdiscrete ball column\n");
+		source.append("\t * @param xVelocity\t\t-1 away from the paddle, +1 toward it\n");
+		source.append("\t * @param yVelocity\t\t-1 up, 0 level, +1 down\n");
+		source.append("\t * @param paddle\t\t\tdiscrete paddle position\n");
+		source.append("\t * @return\t\t\t\t\taction (0 up, 1 down, 2 stay)\n");
+		source.append("\t */\n");
+		source.append("\tpublic static int action(int row, int column, int xVelocity, int yVelocity, int paddle)\n\t{\n");
+		generate(tree, source, 2);
+		source.append("\t}\n}\n");
+		return source.toString();
+	}
+	
+	
+	private static void generate(Node node, StringBuilder source, int indent)
+	{
+		String tabs = tabs(indent);
+		if (node.feature < 0)
+		{
+			source.append(tabs).append("return ").append(node.action).append(";\n");
+			return;
+		}
+		
+		source.append(tabs).append("if (").append(FEATURES[node.feature]).append(" <= ").append(node.threshold).append(")\n");
+		appendBranch(node.low, source, indent);
+		source.append(tabs).append("else\n");
+		appendBranch(node.high, source, indent);
+	}
+	
+	
+	private static void appendBranch(Node node, StringBuilder source, int indent)
+	{
+		String tabs = tabs(indent);
+		if (node.feature < 0)
+		{
+			generate(node, source, indent+1);
+			return;
+		}
+		
+		source.append(tabs).append("{\n");
+		generate(node, source, indent+1);
+		source.append(tabs).append("}\n");
+	}
+	
+	
+	private static String tabs(int count)
+	{
+		StringBuilder tabs = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			tabs.append('\t');
+		return tabs.toString();
+	}
+}
@@ -0,0 +1,155 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+/**
+ * Load generator for PolicyServer.
+ * 
+ * Opens a number of connections, keeps a fixed number of pipelined requests outstanding on
+ * each and reports requests/sec, lookups/sec and the p50/p99 latency of a request.
+ * 
+ * Usage:  java PolicyLoadGenerator [port] [connections] [requestsPerConnection] [pipelineDepth] [batchSize]
+ */
+public class PolicyLoadGenerator
+{
+	/**
+	 * Main function.
+	 * @param args		see class documentation, all optional
+	 * @throws Exception
+	 */
+	public static void main(String [] args) throws Exception
+	{
+		final int port = (args.length > 0) ? Integer.parseInt(args[0]) : 7070;
+		int connections = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+		final int requests = (args.length > 2) ? Integer.parseInt(args[2]) : 100000;
+		final int depth = (args.length > 3) ? Integer.parseInt(args[3]) : 16;
+		final int batchSize = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+		
+		final long [][] latencies = new long[connections][];
+		Thread [] clients = new Thread[connections];
+		
+		long start = System.nanoTime();
+		for (int c = 0; c < connections; c++)
+		{
+			final int client = c;
+			clients[c] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						latencies[client] = runConnection(port, requests, depth, batchSize, new Random(client));
+					}
+					catch (IOException e)
+					{
+						System.out.println("Connection " + client + " failed:  " + e.getMessage());
+						latencies[client] = new long[0];
+					}
+				}
+			});
+			clients[c].start();
+		}
+		
+		for (Thread client : clients)
+			client.join();
+		double seconds = (System.nanoTime() - start)/1e9;
+		
+		int total = 0;
+		for (long [] connection : latencies)
+			total += connection.length;
+		long [] all = new long[total];
+		int offset = 0;
+		for (long [] connection : latencies)
+		{
+			System.arraycopy(connection, 0, all, offset, connection.length);
+			offset += connection.length;
+		}
+		Arrays.sort(all);
+		
+		if (total == 0)
+			return;
+		
+		System.out.println("Connections:  " + connections + "  Pipeline depth:  " + depth + "  Batch size:  " + batchSize);
+		System.out.printf("Requests/sec:  %.0f%n", total/seconds);
+		System.out.printf("Lookups/sec:  %.0f%n", (double)(total)*batchSize/seconds);
+		System.out.printf("Latency p50:  %.1f us%n", all[total/2]/1e3);
+		System.out.printf("Latency p99:  %.1f us%n", all[(int)(total*0.99)]/1e3);
+	}
+	
+	
+	/**
+	 * Send requests over one connection, keeping depth of them outstanding.
+	 * 
+	 * @return		latency of each request in nanoseconds
+	 */
+	private static long [] runConnection(int port, int requests, int depth, int batchSize, Random random) throws IOException
+	{
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		
+		try
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			
+			long [] latencies = new long[requests];
+			long [] sent = new long[depth];
+			int sentCount = 0;
+			
+			//fill the pipeline
+			while (sentCount < Math.min(depth, requests))
+			{
+				out.write(randomRequest(random, batchSize));
+				sent[sentCount % depth] = System.nanoTime();
+				sentCount++;
+			}
+			out.flush();
+			
+			for (int received = 0; received < requests; received++)
+			{
+				String response = in.readLine();
+				if (response == null || response.startsWith("error"))
+					throw new IOException("Bad response:  " + response);
+				latencies[received] = System.nanoTime() - sent[received % depth];
+				
+				if (sentCount < requests)
+				{
+					out.write(randomRequest(random, batchSize));
+					out.flush();
+					sent[sentCount % depth] = System.nanoTime();
+					sentCount++;
+				}
+			}
+			
+			return latencies;
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+	
+	
+	/**
+	 * @return		request line with batchSize random game states
+	 */
+	private static String randomRequest(Random random, int batchSize)
+	{
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < batchSize; i++)
+		{
+			if (i > 0)
+				line.append(';');
+			
+			double xVelocity = (0.03 + 0.03*random.nextDouble())*(random.nextBoolean() ? 1 : -1);
+			double yVelocity = 0.06*random.nextDouble() - 0.03;
+			line.append(random.nextDouble()).append(' ').append(random.nextDouble()).append(' ')
+					.append(xVelocity).append(' ').append(yVelocity).append(' ')
+					.append(0.8*random.nextDouble());
+		}
+		return line.append('\n').toString();
+	}
+}
@@ -0,0 +1,280 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Serves a trained policy to local processes over TCP.
+ * 
+ * The protocol is line based.  A request is one game state "x y xVelocity yVelocity paddle"
+ * and is answered with a line holding the action (0 up, 1 down, 2 stay).  Several states
+ * separated by ';' form a batch and are answered with their actions separated by spaces.
+ * Requests may be pipelined, responses are flushed once no more input is waiting.
+ * The line "reload" reloads the checkpoint immediately and is answered with "ok" or "error".
+ * 
+ * States are discretised with GameSession.discretize and the action is the greedy action
+ * of Driver.greedyAction, so the served policy is the one Driver tests with.  The checkpoint
+ * is watched and swapped in atomically when it changes, without dropping connections.
+ * 
+ * Usage:  java PolicyServer checkpoint [port]
+ */
+public class PolicyServer
+{
+	private static int DEFAULT_PORT = 7070;
+	
+	//milliseconds between checks of the checkpoint for changes
+	private static int RELOAD_POLL_MS = 1000;
+	
+	private String checkpointFile;
+	private AtomicReference<ServedPolicy> policy = new AtomicReference<ServedPolicy>();
+	private volatile long checkpointModified;
+	
+	
+	/**
+	 * Policy currently served, swapped as a whole on reload.
+	 */
+	private static class ServedPolicy
+	{
+		private DiscretizationSpec spec;
+		private StateLayout layout;
+		private PolicySnapshot snapshot;
+		
+		private ServedPolicy(QTableCheckpoint checkpoint)
+		{
+			this.spec = checkpoint.spec;
+			this.layout = checkpoint.layout();
+			this.snapshot = new PolicySnapshot(checkpoint.table);
+		}
+		
+		private int action(double x, double y, double xVelocity, double yVelocity, double paddle)
+		{
+			DiscreteState state = GameSession.discretize(spec, x, y, xVelocity, yVelocity, paddle);
+			int action = snapshot.action(layout.index(state.row, state.column, state.xVelocity,
+					state.yVelocity, state.paddlePosition));
+			if (layout.mirrors(state.row, state.column, state.xVelocity, state.yVelocity, state.paddlePosition))
+				return StateLayout.mirrorAction(action);
+			return action;
+		}
+	}
+	
+	
+	/**
+	 * @param checkpointFile	checkpoint to serve and watch
+	 * @throws IOException		if the checkpoint cannot be loaded
+	 */
+	public PolicyServer(String checkpointFile) throws IOException
+	{
+		this.checkpointFile = checkpointFile;
+		reload();
+	}
+	
+	
+	/**
+	 * Main function.
+	 * @param args		checkpoint file and optional port
+	 * @throws IOException
+	 */
+	public static void main(String [] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage:  java PolicyServer checkpoint [port]");
+			return;
+		}
+		
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		new PolicyServer(args[0]).serve(port);
+	}
+	
+	
+	/**
+	 * Accept connections on the loopback interface until the process is stopped.
+	 * 
+	 * @param port		port to listen on
+	 * @throws IOException
+	 */
+	public void serve(int port) throws IOException
+	{
+		startWatcher();
+		
+		ExecutorService connections = newConnectionExecutor();
+		ServerSocket server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		System.out.println("Serving " + checkpointFile + " on " + server.getLocalSocketAddress());
+		
+		try
+		{
+			while (true)
+			{
+				final Socket client = server.accept();
+				client.setTcpNoDelay(true);
+				connections.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						handle(client);
+					}
+				});
+			}
+		}
+		finally
+		{
+			server.close();
+			connections.shutdownNow();
+		}
+	}
+	
+	
+	/**
+	 * Reload the checkpoint and swap it in.
+	 * 
+	 * @throws IOException		if the checkpoint cannot be loaded, the served policy is kept
+	 * 							and the file is not retried until it changes again
+	 */
+	public synchronized void reload() throws IOException
+	{
+		checkpointModified = new File(checkpointFile).lastModified();
+		policy.set(new ServedPolicy(QTableCheckpoint.load(checkpointFile)));
+	}
+	
+	
+	/**
+	 * Answer the requests of one connection until the client closes it.
+	 */
+	private void handle(Socket client)
+	{
+		try
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+			
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				out.write(respond(line.trim()));
+				out.write('\n');
+				
+				//pipelined requests are answered together
+				if (!in.ready())
+					out.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			//client went away, nothing to clean up besides the socket
+		}
+		finally
+		{
+			try
+			{
+				client.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+	}
+	
+	
+	/**
+	 * Build the response to one request line.
+	 */
+	private String respond(String line)
+	{
+		if (line.equals("reload"))
+		{
+			try
+			{
+				reload();
+				return "ok";
+			}
+			catch (IOException e)
+			{
+				return "error " + e.getMessage();
+			}
+		}
+		
+		//one policy for the whole batch, even if a reload happens half way
+		ServedPolicy current = policy.get();
+		StringBuilder response = new StringBuilder();
+		
+		try
+		{
+			for (String request : line.split(";"))
+			{
+				String [] fields = request.trim().split("\\s+");
+				if (fields.length != 5)
+					return "error expected x y xVelocity yVelocity paddle";
+				
+				if (response.length() > 0)
+					response.append(' ');
+				response.append(current.action(Double.parseDouble(fields[0]), Double.parseDouble(fields[1]),
+						Double.parseDouble(fields[2]), Double.parseDouble(fields[3]), Double.parseDouble(fields[4])));
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			return "error " + e.getMessage();
+		}
+		
+		return response.toString();
+	}
+	
+	
+	/**
+	 * Start a daemon thread reloading the checkpoint whenever the file changes.
+	 */
+	private void startWatcher()
+	{
+		Thread watcher = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while (true)
+				{
+					try
+					{
+						Thread.sleep(RELOAD_POLL_MS);
+						if (new File(checkpointFile).lastModified() != checkpointModified)
+						{
+							reload();
+							System.out.println("Reloaded " + checkpointFile);
+						}
+					}
+					catch (IOException e)
+					{
+						System.out.println("Reload of " + checkpointFile + " failed:  " + e.getMessage());
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		}, "checkpoint-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+	
+	
+	/**
+	 * One virtual thread per connection where the JVM has them (Java 21 and later), otherwise
+	 * a cached pool of platform threads.
+	 */
+	private static ExecutorService newConnectionExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+import java.util.Random;
+
+
+/**
+ * Frozen greedy policy taken from the Q-table.
+ * 
+ * Holds only the greedy action of each table row, so it is cheap to take, small to keep
+ * and safe to read from other threads while training carries on updating the Q-table.
+ * As a PaddleAgent it plays games without learning from them.
+ */
+public class PolicySnapshot implements PaddleAgent
+{
+	//greedy action of each row in the Q-table
+	private byte [] actions;
+	
+	
+	/**
+	 * Take a snapshot of the greedy policy of a Q-table.
+	 * 
+	 * @param table		Q-table to freeze
+	 */
+	public PolicySnapshot(QTable table)
+	{
+		this.actions = new byte[table.rows()];
+		for (int i = 0; i < actions.length; i++)
+			this.actions[i] = (byte) Driver.greedyAction(table, i);
+	}
+	
+	
+	/**
+	 * @param stateRow		row of table best representing current game state
+	 * @return				greedy action at the time of the snapshot
+	 */
+	public int action(int stateRow)
+	{
+		return actions[stateRow];
+	}
+	
+	
+	@Override
+	public int chooseAction(int stateRow, DiscreteState state)
+	{
+		return actions[stateRow];
+	}
+	
+	
+	/**
+	 * @param state		discrete state of the game
+	 * @return			greedy action to play in the state, with up and down swapped if the state is
+	 * 					stored as its mirror image
+	 */
+	public int action(DiscreteState state)
+	{
+		int action = actions[Driver.getIntegerRepState(state)];
+		return Driver.isMirrored(state) ? StateLayout.mirrorAction(action) : action;
+	}
+	
+	
+	/**
+	 * Play a game using only the snapshot policy, the way Driver.playGame plays it.
+	 * 
+	 * @param loop				step loop of the game, e.g. Driver.getGameLoop
+	 * @param bounces			randomizer of the bounces, null to seed every bounce with the current time
+	 * @return					bounces of the right paddle in the game
+	 */
+	public int playGreedyGame(GameLoop loop, Random bounces)
+	{
+		GameSession game = loop.newGame(false, bounces);
+		loop.play(game, this);
+		return game.bouncesThisGame();
+	}
+}
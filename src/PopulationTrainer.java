@@ -0,0 +1,352 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Population-based training of Q-learning agents.
+ * 
+ * Every agent has its own ArrayQTable and its own discount, learn rate constant and
+ * exploration threshold.  The agents train in parallel on a thread pool, readyGames games
+ * at a time, and each is then scored by the average bounces of greedy games.  The worst
+ * quarter of the population copies the table and hyperparameters of a random agent of the
+ * best quarter (exploit) and scales each hyperparameter up or down (explore).  Hyperparameter
+ * schedules are found this way within a single run, with the good tables carried along.
+ * 
+ * The first agent starts with the hyperparameters given, the others with random ones around
+ * them.  Agents play their games with Driver's GameLoop, so self-play, action repeat and
+ * rewards are those of Driver.playGame.  They explore by threshold with their own threshold
+ * and learn with Q-learning and their own discount and learn rate constant, whatever Driver's
+ * exploration and learner.  Each evaluation and copy is written to a lineage log, and the
+ * bounces of every agent's training games go to Driver.recordTrainingGame after each generation.
+ * 
+ * All randomness, of the hyperparameters, the copies, the exploration and the bounces of each
+ * agent's games, comes from the seed, so a run is reproducible whatever the number of threads.
+ */
+public class PopulationTrainer 
+{
+	//fraction of the population replaced and copied from at every generation
+	private static double TRUNCATION = 0.25;
+	
+	//factors a hyperparameter is scaled by when an agent explores
+	private static double [] PERTURBATIONS = {0.8, 1.25};
+	
+	private static final String LINEAGE_HEADER = "generation,games,agent,score,gamma,learnRate,exploreThreshold,copiedFrom";
+	
+	private GameLoop loop;
+	private int readyGames;
+	private int evaluationGames;
+	private Agent [] agents;
+	
+	//randomizer of the hyperparameters and copies, only used by the thread calling train
+	private Random random;
+	
+	
+	/**
+	 * Member of the population.  Only touched by one pool thread at a time.
+	 */
+	private class Agent implements Callable<Double>, PaddleAgent
+	{
+		private int id;
+		private ArrayQTable table;
+		private double gamma;
+		private double learnRate;
+		private int exploreThreshold;
+		private ThresholdExploration exploration;
+		private Random random;
+		
+		//randomizer of the bounces of the agent's games
+		private Random bounces;
+		
+		private double score = 0;
+		
+		//bounces of the training games of the current generation, recorded by train
+		private int [] trainingBounces;
+		
+		//true while playing a training game, greedy games do not learn
+		private boolean training;
+		
+		//agents whose tables this one descends from, e.g. "0 > 3@2 > 5@4" for a table copied
+		//by agent 3 in generation 2 and by agent 5 in generation 4
+		private String lineage;
+		
+		private Agent(int id, int rows, double gamma, double learnRate, int exploreThreshold, long seed)
+		{
+			this.id = id;
+			this.table = new ArrayQTable(rows);
+			this.gamma = gamma;
+			this.learnRate = learnRate;
+			this.exploreThreshold = exploreThreshold;
+			this.exploration = new ThresholdExploration(exploreThreshold);
+			this.random = new Random(seed);
+			this.bounces = new Random(random.nextLong());
+			this.lineage = Integer.toString(id);
+			this.trainingBounces = new int[readyGames];
+		}
+		
+		
+		/**
+		 * Train readyGames games, then score the greedy policy.
+		 */
+		@Override
+		public Double call()
+		{
+			for (int i = 0; i < readyGames; i++)
+				trainingBounces[i] = playGame(true);
+			
+			long bounces = 0;
+			for (int i = 0; i < evaluationGames; i++)
+				bounces += playGame(false);
+			
+			score = (double)(bounces)/evaluationGames;
+			return score;
+		}
+		
+		
+		/**
+		 * Play one game, learning from it in training mode.
+		 * 
+		 * @return		bounces in the game
+		 */
+		private int playGame(boolean trainingMode)
+		{
+			training = trainingMode;
+			GameSession game = loop.newGame(false, bounces);
+			loop.play(game, this);
+			return game.bouncesThisGame();
+		}
+		
+		
+		/**
+		 * Threshold exploration on the agent's own table while training, the greedy action otherwise.
+		 */
+		@Override
+		public int chooseAction(int stateRow, DiscreteState state)
+		{
+			if (!training)
+				return Driver.greedyAction(table, stateRow);
+			return exploration.chooseAction(table, stateRow, random);
+		}
+		
+		
+		/**
+		 * Q-learning update with the agent's hyperparameters, the arithmetic of Driver.temporalDifference.
+		 */
+		@Override
+		public void learn(int pastState, int pastOption, int reward, int current)
+		{
+			if (!training)
+				return;
+			
+			if (current == table.rows()-1)
+			{
+				for (int i = 0; i < 3; i++)
+					table.setUtility(current, i, -1);
+			}
+			
+			//greatest utility of the current state, as in Driver.findGreatestUtil
+			double currentVal = Double.MIN_VALUE;
+			for (int i = 0; i < 3; i++)
+				currentVal = Math.max(currentVal, table.utility(current, i));
+			
+			update(pastState, pastOption, reward, currentVal);
+		}
+		
+		
+		/**
+		 * Update without a loss in self-play, bootstrapping from nothing as Learner.updateWithoutLoss.
+		 */
+		@Override
+		public void learnWithoutLoss(int pastState, int pastOption, int reward)
+		{
+			if (training)
+				update(pastState, pastOption, reward, 0);
+		}
+		
+		
+		/**
+		 * Count the attempt and move the utility toward the reward and the value of the next state.
+		 */
+		private void update(int pastState, int pastOption, int reward, double currentVal)
+		{
+			int attempts = table.addAttempt(pastState, pastOption);
+			double alpha = learnRate/(learnRate-1+attempts);
+			
+			double pastVal = table.utility(pastState, pastOption);
+			table.setUtility(pastState, pastOption, pastVal + alpha*(reward + gamma*currentVal - pastVal));
+		}
+		
+		
+		/**
+		 * Take over the table and hyperparameters of another agent, then perturb the hyperparameters.
+		 * The source is one of the best quarter, which never copies in the same generation.
+		 */
+		private void exploit(Agent source, int generation)
+		{
+			table.copyFrom(source.table);
+			gamma = Math.min(0.99, Math.max(0.01, source.gamma*perturbation()));
+			learnRate = Math.max(2, source.learnRate*perturbation());
+			exploreThreshold = Math.max(1, (int) Math.round(source.exploreThreshold*perturbation()));
+			exploration.setExploreThreshold(exploreThreshold);
+			lineage = source.lineage + " > " + id + "@" + generation;
+		}
+	}
+	
+	
+	/**
+	 * @param size					number of agents
+	 * @param loop					step loop of the games
+	 * @param gamma					discount of the first agent
+	 * @param learnRate				learn rate constant of the first agent, see Driver.calculateLearnRate
+	 * @param exploreThreshold		exploration threshold of the first agent
+	 * @param readyGames			training games of each agent between evaluations
+	 * @param evaluationGames		greedy games of each evaluation
+	 * @param seed					seed of the population's randomizers
+	 */
+	public PopulationTrainer(int size, GameLoop loop, double gamma, int learnRate, int exploreThreshold, 
+			int readyGames, int evaluationGames, long seed)
+	{
+		if (size < 2)
+			throw new IllegalArgumentException("A population needs at least two agents:  " + size);
+		
+		this.loop = loop;
+		this.readyGames = readyGames;
+		this.evaluationGames = evaluationGames;
+		this.random = new Random(seed);
+		
+		int rows = Driver.scoreBoard.rows();
+		agents = new Agent[size];
+		agents[0] = new Agent(0, rows, gamma, learnRate, exploreThreshold, random.nextLong());
+		for (int i = 1; i < size; i++)
+		{
+			//discount uniform, learn rate constant and threshold log-uniform around the given ones
+			double agentGamma = 0.05 + 0.9*random.nextDouble();
+			double agentLearnRate = Math.max(2, learnRate*Math.pow(10, 2*random.nextDouble()-1.5));
+			int agentThreshold = Math.max(1, (int) Math.round(exploreThreshold*Math.pow(4, 2*random.nextDouble()-1)));
+			agents[i] = new Agent(i, rows, agentGamma, agentLearnRate, agentThreshold, random.nextLong());
+		}
+	}
+	
+	
+	/**
+	 * Train the population.
+	 * 
+	 * @param games				training games of each agent, rounded up to whole generations
+	 * @param lineageFile		CSV file to write the lineage log to, null for none.  Training goes
+	 * 							on without the log if the file cannot be opened.
+	 * @return					table of the best agent of the last generation
+	 * @throws InterruptedException
+	 */
+	public ArrayQTable train(int games, String lineageFile) throws InterruptedException
+	{
+		PrintWriter lineage = null;
+		if (lineageFile != null)
+		{
+			try
+			{
+				lineage = new PrintWriter(new BufferedWriter(new FileWriter(lineageFile)));
+			}
+			catch (IOException e)
+			{
+				System.out.println("Lineage log disabled, cannot open " + lineageFile + ":  " + e.getMessage());
+			}
+		}
+		
+		int threads = Math.min(agents.length, Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		
+		try
+		{
+			if (lineage != null)
+				lineage.println(LINEAGE_HEADER);
+			
+			int generations = Math.max(1, (games + readyGames - 1)/readyGames);
+			for (int generation = 1; generation <= generations; generation++)
+			{
+				for (Future<Double> result : pool.invokeAll(Arrays.<Callable<Double>>asList(agents)))
+				{
+					try
+					{
+						result.get();
+					}
+					catch (ExecutionException e)
+					{
+						throw new IllegalStateException("Agent failed in generation " + generation, e.getCause());
+					}
+				}
+				
+				//on this thread, Driver's statistics are not thread-safe
+				for (Agent agent : agents)
+				{
+					for (int bounces : agent.trainingBounces)
+						Driver.recordTrainingGame(bounces);
+				}
+				
+				Agent [] ranked = agents.clone();
+				Arrays.sort(ranked, new Comparator<Agent>()
+				{
+					@Override
+					public int compare(Agent a, Agent b)
+					{
+						return Double.compare(b.score, a.score);
+					}
+				});
+				
+				System.out.printf(Locale.ROOT, "Generation %d:  best %.2f (agent %d), worst %.2f (agent %d)%n", generation, 
+						ranked[0].score, ranked[0].id, ranked[ranked.length-1].score, ranked[ranked.length-1].id);
+				
+				//no copies after the last evaluation, so the best table is the one that was scored
+				int replaced = (generation == generations) ? 0 : Math.max(1, (int)(agents.length*TRUNCATION));
+				Agent [] sources = new Agent[agents.length];
+				for (int i = 0; i < replaced; i++)
+					sources[ranked[ranked.length-1-i].id] = ranked[random.nextInt(replaced)];
+				
+				if (lineage != null)
+				{
+					for (Agent agent : agents)
+					{
+						lineage.printf(Locale.ROOT, "%d,%d,%d,%.3f,%.4f,%.1f,%d,%d%n", generation, generation*readyGames, 
+								agent.id, agent.score, agent.gamma, agent.learnRate, agent.exploreThreshold, 
+								(sources[agent.id] == null) ? -1 : sources[agent.id].id);
+					}
+					lineage.flush();
+				}
+				
+				for (Agent agent : agents)
+				{
+					if (sources[agent.id] != null)
+						agent.exploit(sources[agent.id], generation);
+				}
+			}
+			
+			Agent best = agents[0];
+			for (Agent agent : agents)
+			{
+				if (agent.score > best.score)
+					best = agent;
+			}
+			
+			System.out.printf(Locale.ROOT, "Best agent %d:  average %.2f, gamma %.4f, learn rate %.1f, explore threshold %d%n", 
+					best.id, best.score, best.gamma, best.learnRate, best.exploreThreshold);
+			System.out.println("Lineage of its table:  " + best.lineage);
+			System.out.println("Training statistics hold the games of all " + agents.length + " agents");
+			
+			return best.table;
+		}
+		finally
+		{
+			pool.shutdown();
+			if (lineage != null)
+				lineage.close();
+		}
+	}
+	
+	
+	/**
+	 * @return		one of the perturbation factors at random
+	 */
+	private double perturbation()
+	{
+		return PERTURBATIONS[random.nextInt(PERTURBATIONS.length)];
+	}
+}
@@ -0,0 +1,33 @@
+
+/**
+ * The original Q-learning of Driver: bootstrap from the best utility of the next state.
+ */
+public class QLearner implements Learner 
+{
+	@Override
+	public String name()
+	{
+		return "Q-learning";
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+	}
+	
+	
+	@Override
+	public int chooseAction(int stateRow, boolean trainingMode)
+	{
+		return Driver.findBestAction(stateRow, trainingMode);
+	}
+	
+	
+	@Override
+	public void update(int previousState, int previousOption, double reward, int currentState, boolean trainingMode)
+	{
+		double newerValue = Driver.calculateNewUtility(reward, currentState, previousState, previousOption, false);
+		Driver.scoreBoard.setUtility(previousState, previousOption, newerValue);
+	}
+}
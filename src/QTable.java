@@ -0,0 +1,58 @@
+
+/**
+ * Storage of the Q-table: a utility and an attempt count for every state/action pair.
+ * 
+ * Rows are table indices as given by the StateLayout, plus the terminal state in the last row.
+ * Actions are 0 (up), 1 (down) and 2 (stay).
+ */
+public interface QTable 
+{
+	/**
+	 * @return		number of rows, including the terminal state
+	 */
+	public int rows();
+	
+	
+	/**
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @return				utility of the state/action pair
+	 */
+	public double utility(int stateRow, int action);
+	
+	
+	/**
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @param value			new utility of the state/action pair
+	 */
+	public void setUtility(int stateRow, int action, double value);
+	
+	
+	/**
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @return				previous attempts of the action from the state
+	 */
+	public int attempts(int stateRow, int action);
+	
+	
+	/**
+	 * Count one more attempt of an action from a state.
+	 * 
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @return				attempts including this one
+	 */
+	public int addAttempt(int stateRow, int action);
+	
+	
+	/**
+	 * Set the attempts of a state/action pair, used when restoring a table.
+	 * 
+	 * @param stateRow		row of the state
+	 * @param action		action from the state
+	 * @param attempts		attempts of the action from the state
+	 */
+	public void setAttempts(int stateRow, int action, int attempts);
+}
@@ -0,0 +1,138 @@
+import java.io.*;
+import java.nio.file.*;
+
+
+/**
+ * Saving and loading of the Q-table.
+ * 
+ * A checkpoint holds the discretisation and layout the table was trained with, followed by
+ * the utility and attempts of every state/action pair.  Checkpoints are written to a temporary
+ * file and moved into place, so a reader never sees a half-written checkpoint.
+ */
+public class QTableCheckpoint 
+{
+	//"QTB1" at the start of every checkpoint
+	private static final int MAGIC = 0x51544231;
+	private static final int VERSION = 2;
+	
+	//discretisation and layout of the table
+	public DiscretizationSpec spec;
+	public String layoutName;
+	
+	//the table itself, including the terminal state
+	public QTable table;
+	
+	
+	/**
+	 * @param spec				bins of each dimension of the discrete state
+	 * @param layoutName		name of the StateLayout of the table
+	 * @param table				Q-table
+	 */
+	public QTableCheckpoint(DiscretizationSpec spec, String layoutName, QTable table)
+	{
+		this.spec = spec;
+		this.layoutName = layoutName;
+		this.table = table;
+	}
+	
+	
+	/**
+	 * @return		layout the table was trained with
+	 */
+	public StateLayout layout()
+	{
+		return StateLayout.forName(layoutName, spec);
+	}
+	
+	
+	/**
+	 * Write the checkpoint.
+	 * 
+	 * @param fileName		checkpoint file, replaced atomically if it exists
+	 * @throws IOException
+	 */
+	public void save(String fileName) throws IOException
+	{
+		Path target = Paths.get(fileName).toAbsolutePath();
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(spec.toString());
+			out.writeUTF(layoutName);
+			out.writeInt(table.rows());
+			
+			for (int a = 0; a < table.rows(); a++)
+			{
+				for (int b = 0; b < 3; b++)
+				{
+					out.writeDouble(table.utility(a, b));
+					out.writeInt(table.attempts(a, b));
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	
+	/**
+	 * Read a checkpoint.
+	 * 
+	 * @param fileName		checkpoint file
+	 * @return				the checkpoint
+	 * @throws IOException	if the file cannot be read or is not a checkpoint
+	 */
+	public static QTableCheckpoint load(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			if (in.readInt() != MAGIC)
+				throw new IOException(fileName + " is not a Q-table checkpoint");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported checkpoint version " + version + " in " + fileName);
+			
+			DiscretizationSpec spec;
+			String layoutName;
+			StateLayout layout;
+			try
+			{
+				spec = DiscretizationSpec.parse(in.readUTF(), 1);
+				layoutName = in.readUTF();
+				layout = StateLayout.forName(layoutName, spec);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IOException(e.getMessage() + " in " + fileName);
+			}
+			int rows = in.readInt();
+			if (rows != layout.size()+1)
+				throw new IOException("Checkpoint " + fileName + " has " + rows + " rows, its layout needs " + (layout.size()+1));
+			
+			HeapQTable table = new HeapQTable(rows);
+			for (int a = 0; a < rows; a++)
+			{
+				for (int b = 0; b < 3; b++)
+				{
+					table.setUtility(a, b, in.readDouble());
+					table.setAttempts(a, b, in.readInt());
+				}
+			}
+			
+			return new QTableCheckpoint(spec, layoutName, table);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+import jdk.jfr.*;
+
+
+/**
+ * JFR event for a sampled update of the Q-table, one in every JFR_Q_UPDATE_SAMPLING updates
+ * of Driver.temporalDifference.  Disabled unless a recording enables it.
+ */
+@Name("pong.QUpdate")
+@Label("Q Update")
+@Category({"Pong", "Learning"})
+@Description("Sampled temporal difference update of a state/action utility")
+@Enabled(false)
+@StackTrace(false)
+public class QUpdateEvent extends Event 
+{
+	@Label("Reward")
+	public double reward;
+	
+	@Label("TD Error")
+	public double tdError;
+	
+	@Label("Learn Rate")
+	@Description("Alpha of the update")
+	public double learnRate;
+	
+	@Label("New Utility")
+	public double utility;
+	
+	
+	/**
+	 * Commit an event if the event type is enabled.
+	 * 
+	 * @param reward		reward of the action
+	 * @param tdError		temporal difference error
+	 * @param learnRate		alpha of the update
+	 * @param utility		utility after the update
+	 */
+	public static void emit(double reward, double tdError, double learnRate, double utility)
+	{
+		QUpdateEvent event = new QUpdateEvent();
+		if (!event.isEnabled())
+			return;
+		
+		event.reward = reward;
+		event.tdError = tdError;
+		event.learnRate = learnRate;
+		event.utility = utility;
+		event.commit();
+	}
+}
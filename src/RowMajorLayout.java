@@ -0,0 +1,54 @@
+
+/**
+ * Original layout of the Q-table: row, column, x-velocity, y-velocity and then paddle.
+ */
+public class RowMajorLayout implements StateLayout 
+{
+	private int rows;
+	private int columns;
+	private int paddles;
+	
+	
+	/**
+	 * @param maxDiscrete		number of discrete row/column/paddle positions
+	 */
+	public RowMajorLayout(int maxDiscrete)
+	{
+		this(DiscretizationSpec.uniform(maxDiscrete));
+	}
+	
+	
+	/**
+	 * @param spec		bins of each dimension of the state
+	 */
+	public RowMajorLayout(DiscretizationSpec spec)
+	{
+		this.rows = spec.rows();
+		this.columns = spec.columns();
+		this.paddles = spec.paddles();
+	}
+	
+	
+	@Override
+	public int index(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		int boardCoordinateFactor = (row*columns+column)*VELOCITY_CLASSES*paddles;
+		int trajectoryFactor = StateLayout.velocityClass(xVelocity, yVelocity)*paddles;
+		
+		return boardCoordinateFactor + trajectoryFactor + paddle;
+	}
+	
+	
+	@Override
+	public int size()
+	{
+		return rows*columns*VELOCITY_CLASSES*paddles;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return "row-major";
+	}
+}
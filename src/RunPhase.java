@@ -0,0 +1,23 @@
+
+/**
+ * Phases of a run of Driver.
+ */
+public enum RunPhase 
+{
+	TRAINING, TESTING, VISUAL;
+	
+	
+	/**
+	 * @param trainingMode		game uses the exploration/exploitation tradeoff
+	 * @param displayVisual		game is shown in the GUI
+	 * @return					phase a game played with these settings belongs to
+	 */
+	public static RunPhase of(boolean trainingMode, boolean displayVisual)
+	{
+		if (trainingMode)
+			return TRAINING;
+		if (displayVisual)
+			return VISUAL;
+		return TESTING;
+	}
+}
@@ -0,0 +1,61 @@
+
+/**
+ * Running mean and variance of a stream of values, by Welford's algorithm, which stays
+ * accurate over millions of values without keeping them.
+ */
+public class RunningStats 
+{
+	private long count = 0;
+	private double mean = 0;
+	
+	//sum of squared differences from the current mean
+	private double squares = 0;
+	
+	
+	/**
+	 * @param value		next value of the stream
+	 */
+	public void add(double value)
+	{
+		count++;
+		double delta = value - mean;
+		mean += delta/count;
+		squares += delta*(value - mean);
+	}
+	
+	
+	/**
+	 * @return		number of values added
+	 */
+	public long count()
+	{
+		return count;
+	}
+	
+	
+	/**
+	 * @return		mean of the values, 0 if there are none
+	 */
+	public double mean()
+	{
+		return mean;
+	}
+	
+	
+	/**
+	 * @return		sample variance of the values, 0 for fewer than two
+	 */
+	public double variance()
+	{
+		return (count < 2) ? 0 : squares/(count-1);
+	}
+	
+	
+	/**
+	 * @return		standard error of the mean
+	 */
+	public double standardError()
+	{
+		return (count == 0) ? 0 : Math.sqrt(variance()/count);
+	}
+}
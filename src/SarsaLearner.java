@@ -0,0 +1,62 @@
+
+/**
+ * SARSA: bootstrap from the utility of the action the policy actually takes next.
+ * 
+ * The next action is chosen during the update and then handed out by the following call
+ * to chooseAction, so the action learned from is the action played.
+ */
+public class SarsaLearner implements Learner 
+{
+	//state and action chosen during the last update, -1 if none is waiting
+	private int pendingState = -1;
+	private int pendingAction;
+	
+	
+	@Override
+	public String name()
+	{
+		return "SARSA";
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+		pendingState = -1;
+	}
+	
+	
+	@Override
+	public int chooseAction(int stateRow, boolean trainingMode)
+	{
+		if (stateRow == pendingState)
+		{
+			pendingState = -1;
+			return pendingAction;
+		}
+		
+		return Driver.findBestAction(stateRow, trainingMode);
+	}
+	
+	
+	@Override
+	public void update(int previousState, int previousOption, double reward, int currentState, boolean trainingMode)
+	{
+		QTable table = Driver.scoreBoard;
+		
+		//the terminal state is valued like in Q-learning, so all learners see the same rewards
+		double currentVal;
+		if (Driver.isTerminalState(currentState))
+			currentVal = Driver.findGreatestUtil(currentState);
+		else
+		{
+			pendingState = currentState;
+			pendingAction = Driver.findBestAction(currentState, trainingMode);
+			currentVal = table.utility(currentState, pendingAction);
+		}
+		
+		double newerValue = Driver.temporalDifference(reward, currentVal, 
+				table.utility(previousState, previousOption), table.attempts(previousState, previousOption));
+		table.setUtility(previousState, previousOption, newerValue);
+	}
+}
@@ -0,0 +1,161 @@
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+
+/**
+ * Evaluation that plays test games in batches and stops as soon as the result is trustworthy.
+ * 
+ * estimate stops once the half-width of the confidence interval of the average bounces is
+ * below the precision asked for.  compare plays a candidate and a baseline policy in turns and
+ * stops once the confidence interval of the difference of their averages excludes zero, or
+ * is narrower than the precision so that any difference is too small to matter.  Both stop
+ * at maxGames games per policy regardless.
+ * 
+ * Looking at the result after every batch would make a fixed-level test reject too often, so
+ * the error probability is split evenly over the looks that maxGames allows (Bonferroni).  The
+ * intervals use the normal approximation, which holds for averages of whole batches even
+ * though the bounces of single games are heavily skewed.  Rare long games make the variance
+ * of a few games an underestimate, so batches should be a few hundred games.
+ */
+public class SequentialEvaluation 
+{
+	private int batchGames;
+	private int maxGames;
+	private double confidence;
+	
+	
+	/**
+	 * Outcome of a comparison against a baseline.
+	 */
+	public static class Comparison
+	{
+		public RunningStats candidate = new RunningStats();
+		public RunningStats baseline = new RunningStats();
+		
+		//half-width of the confidence interval of the difference of the averages
+		public double halfWidth;
+		
+		//+1 if the candidate is better, -1 if it is worse, 0 if no difference was found
+		public int verdict;
+		
+		@Override
+		public String toString()
+		{
+			String decision = (verdict > 0) ? "better than" : (verdict < 0) ? "worse than" : "not distinguishable from";
+			return String.format(Locale.ROOT, "candidate %.2f, baseline %.2f, difference %+.2f +- %.2f after %d games each:  %s the baseline", 
+					candidate.mean(), baseline.mean(), candidate.mean()-baseline.mean(), halfWidth, candidate.count(), decision);
+		}
+	}
+	
+	
+	/**
+	 * @param batchGames		games played between two looks at the result
+	 * @param maxGames			games per policy after which evaluation stops
+	 * @param confidence		confidence level of the intervals, e.g. 0.95
+	 */
+	public SequentialEvaluation(int batchGames, int maxGames, double confidence)
+	{
+		if (batchGames < 2 || maxGames < batchGames)
+			throw new IllegalArgumentException("Need at least two games per batch and one batch:  " + batchGames + ", " + maxGames);
+		if (!(confidence > 0 && confidence < 1))
+			throw new IllegalArgumentException("Confidence must lie in (0, 1):  " + confidence);
+		
+		this.batchGames = batchGames;
+		this.maxGames = maxGames;
+		this.confidence = confidence;
+	}
+	
+	
+	/**
+	 * Play games until the average bounces are known to within the precision.
+	 * 
+	 * @param games			plays one game and returns its bounces
+	 * @param precision		half-width of the confidence interval to reach
+	 * @return				bounces of the games played
+	 */
+	public RunningStats estimate(IntSupplier games, double precision)
+	{
+		RunningStats stats = new RunningStats();
+		double z = criticalValue();
+		
+		do
+		{
+			for (int i = 0; i < batchGames; i++)
+				stats.add(games.getAsInt());
+		}
+		while (z*stats.standardError() > precision && stats.count() + batchGames <= maxGames);
+		
+		return stats;
+	}
+	
+	
+	/**
+	 * Play a candidate and a baseline policy until their averages are known to differ, or
+	 * known to differ by less than the precision.
+	 * 
+	 * @param candidate		plays one game of the candidate and returns its bounces
+	 * @param baseline		plays one game of the baseline and returns its bounces
+	 * @param precision		difference of the averages too small to matter, 0 to only stop on a difference
+	 * @return				the comparison
+	 */
+	public Comparison compare(IntSupplier candidate, IntSupplier baseline, double precision)
+	{
+		Comparison result = new Comparison();
+		double z = criticalValue();
+		
+		while (true)
+		{
+			for (int i = 0; i < batchGames; i++)
+			{
+				result.candidate.add(candidate.getAsInt());
+				result.baseline.add(baseline.getAsInt());
+			}
+			
+			double difference = result.candidate.mean() - result.baseline.mean();
+			double standardError = Math.sqrt(result.candidate.variance()/result.candidate.count() 
+					+ result.baseline.variance()/result.baseline.count());
+			result.halfWidth = z*standardError;
+			
+			if (Math.abs(difference) > result.halfWidth)
+			{
+				result.verdict = (difference > 0) ? 1 : -1;
+				return result;
+			}
+			
+			if (result.halfWidth < precision || result.candidate.count() + batchGames > maxGames)
+				return result;
+		}
+	}
+	
+	
+	/**
+	 * @return		two-sided critical value of the normal distribution for the confidence level,
+	 * 				with the error probability split over the possible looks
+	 */
+	public double criticalValue()
+	{
+		int looks = maxGames/batchGames;
+		return inverseNormalTail((1-confidence)/(2*looks));
+	}
+	
+	
+	/**
+	 * @param stats		bounces of some games
+	 * @return			half-width of the confidence interval of their average
+	 */
+	public double halfWidth(RunningStats stats)
+	{
+		return criticalValue()*stats.standardError();
+	}
+	
+	
+	/**
+	 * Value exceeded by a standard normal variable with probability p, for p up to 0.5.
+	 * Rational approximation 26.2.23 of Abramowitz and Stegun, accurate to 4.5e-4.
+	 */
+	private static double inverseNormalTail(double p)
+	{
+		double t = Math.sqrt(-2*Math.log(p));
+		return t - (2.515517 + 0.802853*t + 0.010328*t*t)/(1 + 1.432788*t + 0.189269*t*t + 0.001308*t*t*t);
+	}
+}
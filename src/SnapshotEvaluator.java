@@ -0,0 +1,140 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Evaluates policy snapshots on a background thread while training continues.
+ * 
+ * Each snapshot is played greedily for a batch of games and the average bounces are
+ * published as a point on the test learning curve.  The games are played with the step loop
+ * of Driver.playGame, so they are the games testGames plays.  A snapshot that arrives while the
+ * previous one is still being played is skipped, so evaluation never holds up training.
+ */
+public class SnapshotEvaluator 
+{
+	private GameLoop loop;
+	private int gamesPerEvaluation;
+	private double targetAverage;
+	
+	//randomizer of the bounces of the evaluation games, only used by the worker thread
+	private Random bounces;
+	
+	private ExecutorService worker;
+	private Future<?> running = null;
+	
+	//test learning curve, pairs of {training games, average bounces}
+	private List<double []> results = Collections.synchronizedList(new ArrayList<double []>());
+	
+	//training games at which the target average was first reached, -1 if not yet reached
+	private volatile int targetReachedAt = -1;
+	
+	
+	/**
+	 * @param loop					step loop of the games
+	 * @param gamesPerEvaluation	greedy games played on each snapshot
+	 * @param targetAverage			average bounces at which training may stop, 0 to never stop
+	 * @param bounces				randomizer of the bounces, null to seed every bounce with the current time
+	 */
+	public SnapshotEvaluator(GameLoop loop, int gamesPerEvaluation, double targetAverage, Random bounces)
+	{
+		this.loop = loop;
+		this.gamesPerEvaluation = gamesPerEvaluation;
+		this.targetAverage = targetAverage;
+		this.bounces = bounces;
+		
+		this.worker = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "snapshot-evaluator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	
+	/**
+	 * Hand a snapshot over for evaluation.  Skipped if the previous evaluation is still running.
+	 * 
+	 * @param gamesPlayed		training games played when the snapshot was taken
+	 * @param snapshot			policy to evaluate
+	 * @return					true if the snapshot was accepted
+	 */
+	public boolean submit(final int gamesPlayed, final PolicySnapshot snapshot)
+	{
+		if (running != null && !running.isDone())
+			return false;
+		
+		running = worker.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				evaluate(gamesPlayed, snapshot);
+			}
+		});
+		return true;
+	}
+	
+	
+	/**
+	 * @return		true once any snapshot has reached the target average
+	 */
+	public boolean targetReached()
+	{
+		return targetReachedAt >= 0;
+	}
+	
+	
+	/**
+	 * @return		training games at which the target was first reached, -1 if it was not
+	 */
+	public int targetReachedAt()
+	{
+		return targetReachedAt;
+	}
+	
+	
+	/**
+	 * @return		copy of the test learning curve, pairs of {training games, average bounces}
+	 */
+	public List<double []> getResults()
+	{
+		synchronized (results)
+		{
+			return new ArrayList<double []>(results);
+		}
+	}
+	
+	
+	/**
+	 * Let the last evaluation finish and stop the worker thread.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void shutdown() throws InterruptedException
+	{
+		worker.shutdown();
+		worker.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	
+	/**
+	 * Play the batch of greedy games and publish the average.
+	 */
+	private void evaluate(int gamesPlayed, PolicySnapshot snapshot)
+	{
+		long total = 0;
+		for (int i = 0; i < gamesPerEvaluation; i++)
+			total += snapshot.playGreedyGame(loop, bounces);
+		
+		double average = (double)(total)/gamesPerEvaluation;
+		results.add(new double[] {gamesPlayed, average});
+		System.out.println("Evaluation after " + gamesPlayed + " games:  average bounces " + average);
+		
+		if (targetAverage > 0 && average >= targetAverage && targetReachedAt < 0)
+			targetReachedAt = gamesPlayed;
+	}
+}
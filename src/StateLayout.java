@@ -0,0 +1,114 @@
+
+/**
+ * Strategy for laying out discrete states in the rows of the Q-table.
+ * 
+ * The layout decides which table row a discrete state lands on.  Two states that
+ * follow each other during a game should ideally land on neighbouring rows so
+ * that their lookups share cache lines.
+ */
+public interface StateLayout 
+{
+	/**
+	 * Number of distinct velocity classes: 2 x-velocities times 3 y-velocities.
+	 */
+	public static final int VELOCITY_CLASSES = 6;
+	
+	
+	/**
+	 * Get the table row of a discrete state.
+	 * 
+	 * @param row			discrete row of the ball
+	 * @param column		discrete column of the ball
+	 * @param xVelocity		-1 for away from paddle, +1 for towards paddle
+	 * @param yVelocity		-1, 0 or +1 (see DiscreteState)
+	 * @param paddle		discrete paddle position
+	 * @return				index in Q-table, excluding the terminal state
+	 */
+	public int index(int row, int column, int xVelocity, int yVelocity, int paddle);
+	
+	
+	/**
+	 * Tell if a state is stored as its mirror image, in which case the up and down actions
+	 * of its table row are swapped.  Only folding layouts store mirror images.
+	 * 
+	 * @return				true if the actions of the state's row are mirrored
+	 */
+	public default boolean mirrors(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		return false;
+	}
+	
+	
+	/**
+	 * @return	number of rows addressed by this layout, excluding the terminal state.
+	 * 			May be larger than the number of states if the layout leaves gaps.
+	 */
+	public int size();
+	
+	
+	/**
+	 * @return	short name of the layout for printing
+	 */
+	public String name();
+	
+	
+	/**
+	 * Create one of the layouts by its name.
+	 * 
+	 * @param name			name as returned by name()
+	 * @param maxDiscrete	number of discrete row/column/paddle positions
+	 * @return				the layout
+	 */
+	public static StateLayout forName(String name, int maxDiscrete)
+	{
+		return forName(name, DiscretizationSpec.uniform(maxDiscrete));
+	}
+	
+	
+	/**
+	 * Create one of the layouts by its name.
+	 * 
+	 * @param name			name as returned by name()
+	 * @param spec			bins of each dimension of the state
+	 * @return				the layout
+	 */
+	public static StateLayout forName(String name, DiscretizationSpec spec)
+	{
+		if (name.startsWith(MirrorFoldedLayout.PREFIX))
+			return new MirrorFoldedLayout(forName(name.substring(MirrorFoldedLayout.PREFIX.length()), spec), spec);
+		if (name.equals("row-major"))
+			return new RowMajorLayout(spec);
+		if (name.equals("velocity-major"))
+			return new VelocityMajorLayout(spec);
+		if (name.equals("morton"))
+			return new MortonLayout(spec);
+		
+		throw new IllegalArgumentException("Unknown state layout:  " + name);
+	}
+	
+	
+	/**
+	 * Swap the up and down actions.
+	 * 
+	 * @param action		0 up, 1 down or 2 stay
+	 * @return				action of the mirror image
+	 */
+	public static int mirrorAction(int action)
+	{
+		return (action == 2) ? 2 : 1-action;
+	}
+	
+	
+	/**
+	 * Combine the x and y velocity into a single class in the range [0, VELOCITY_CLASSES).
+	 * 
+	 * @param xVelocity		-1 or +1
+	 * @param yVelocity		-1, 0 or +1
+	 * @return				velocity class
+	 */
+	public static int velocityClass(int xVelocity, int yVelocity)
+	{
+		int xVelFactor = (xVelocity == -1) ? 0 : 1;
+		return xVelFactor*3 + yVelocity + 1;
+	}
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * The original exploration of Driver: play the actions attempted fewer than threshold times at
+ * random, and the greedy action once every action of the state has reached it.
+ * 
+ * The under-explored actions are looked up in the attempts of the table played from, whether
+ * Driver's Q-table or a frozen copy of an actor of ActorLearnerTrainer.  Driver passes its
+ * MAX_ATTEMPT_EXPLORE with setExploreThreshold before every new table.
+ */
+public class ThresholdExploration implements ExplorationStrategy 
+{
+	//threshold of Driver's MAX_ATTEMPT_EXPLORE before any settings
+	private static final int DEFAULT_THRESHOLD = 20;
+	
+	private int threshold;
+	
+	
+	/**
+	 * Threshold exploration with a threshold of 20 attempts.
+	 */
+	public ThresholdExploration()
+	{
+		this(DEFAULT_THRESHOLD);
+	}
+	
+	
+	/**
+	 * @param threshold		attempts at which an action counts as explored
+	 */
+	public ThresholdExploration(int threshold)
+	{
+		setExploreThreshold(threshold);
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return "threshold";
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+	}
+	
+	
+	@Override
+	public void setExploreThreshold(int threshold)
+	{
+		if (threshold < 0)
+			throw new IllegalArgumentException("Negative explore threshold:  " + threshold);
+		this.threshold = threshold;
+	}
+	
+	
+	/**
+	 * @return		attempts at which an action counts as explored
+	 */
+	public int getExploreThreshold()
+	{
+		return threshold;
+	}
+	
+	
+	@Override
+	public int chooseAction(QTable table, int stateRow, Random random)
+	{
+		int underExplored = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.attempts(stateRow, i) < threshold)
+				underExplored++;
+		}
+		
+		if (underExplored == 0)
+			return Driver.greedyAction(table, stateRow);
+		
+		//the pick-th under-explored action, the choice of ExplorationMask.randomAction
+		int pick = random.nextInt(underExplored);
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.attempts(stateRow, i) < threshold && pick-- == 0)
+				return i;
+		}
+		return 2;
+	}
+	
+	
+	@Override
+	public void actionProbabilities(QTable table, int stateRow, double [] probabilities)
+	{
+		Arrays.fill(probabilities, 0);
+		
+		int count = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.attempts(stateRow, i) < threshold)
+				count++;
+		}
+		
+		if (count == 0)
+		{
+			probabilities[Driver.greedyAction(table, stateRow)] = 1;
+			return;
+		}
+		
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.attempts(stateRow, i) < threshold)
+				probabilities[i] = 1.0/count;
+		}
+	}
+}
@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+
+
+/**
+ * End-to-end throughput benchmark of training and testing.
+ * 
+ * Runs a fixed-seed workload through Driver.trainGames and Driver.testGames, first as JIT
+ * warmup and then measured several times, each on a fresh table.  Reports the best and median
+ * steps/sec and games/sec of the repetitions, the spread between them as a percentage of the best,
+ * peak heap and the time from JVM start to the first finished game.  Writes them as JSON and
+ * compares the best throughputs against a baseline file, since other load on the machine only
+ * ever slows a repetition down.  Exits with status 1 if any throughput falls below the baseline by
+ * more than the tolerance, and with status 2 if the baseline was made with another workload.  The
+ * tolerance is widened to the sum of the spreads of the baseline and the current run, so a noisy
+ * machine loosens the comparison instead of failing unchanged code.  Baselines are
+ * specific to the machine they were recorded on, so the JSON also records the CPU, cores, JVM and
+ * OS, and the comparison warns if they differ from the baseline's.
+ * 
+ * The workload uses the learner, layout and discretisation configured in Driver.  With a fixed
+ * seed every repetition simulates the same number of steps, so a change in the
+ * step count means the game or the learning changed, not the speed.  This holds for training
+ * on the main thread, see Driver.setSeed, not with ACTOR_THREADS or the snapshot evaluator.
+ * 
+ * Usage:  java ThroughputBenchmark [-games N] [-test N] [-warmup N] [-repeats N] [-seed S]
+ * 							[-tolerance percent] [-output file] [-baseline file] [-update]
+ */
+public class ThroughputBenchmark
+{
+	private static int DEFAULT_TRAINING_GAMES = 50000;
+	private static int DEFAULT_TESTING_GAMES = 50000;
+	private static int DEFAULT_WARMUP_GAMES = 20000;
+	private static int DEFAULT_REPEATS = 5;
+	private static long DEFAULT_SEED = 42;
+	
+	//least percentage a throughput may fall below the baseline before the benchmark fails,
+	//widened to the spread of the repetitions
+	private static double DEFAULT_TOLERANCE = 5;
+	
+	private static String DEFAULT_OUTPUT = "throughput.json";
+	private static String DEFAULT_BASELINE = "benchmarks/throughput-baseline.json";
+	
+	//workload fields, must match the baseline exactly.  The discretisation is recorded as
+	//maxDiscrete when it is uniform, as in baselines from before DiscretizationSpec, and as
+	//discretizationHash otherwise
+	private static final String [] WORKLOAD = {"maxDiscrete", "discretizationHash", "trainingGames", "testingGames", "seed"};
+	
+	//throughput fields compared with the baseline, the best of the repetitions, higher is better.
+	//Each has fields of the same name ending in Median and in Spread, the shortfall of the median
+	//from the best in percent of the best
+	private static final String [] THROUGHPUT = {"trainStepsPerSec", "trainGamesPerSec", "testStepsPerSec", "testGamesPerSec"};
+	
+	//machine fields, only compared to warn that the throughputs are not comparable
+	private static final String [] MACHINE = {"cpu", "cores", "jvm", "os"};
+	
+	private static final Pattern FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.eE+-]+)");
+	private static final Pattern TEXT_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"([^\"]*)\"");
+	
+	
+	/**
+	 * Main function.
+	 * @param args		options, see the class documentation
+	 * @throws Exception
+	 */
+	public static void main(String [] args) throws Exception
+	{
+		int trainingGames = DEFAULT_TRAINING_GAMES;
+		int testingGames = DEFAULT_TESTING_GAMES;
+		int warmupGames = DEFAULT_WARMUP_GAMES;
+		int repeats = DEFAULT_REPEATS;
+		long seed = DEFAULT_SEED;
+		double tolerance = DEFAULT_TOLERANCE;
+		String output = DEFAULT_OUTPUT;
+		String baseline = DEFAULT_BASELINE;
+		boolean update = false;
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-games"))
+				trainingGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-test"))
+				testingGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-warmup"))
+				warmupGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-repeats"))
+				repeats = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-tolerance"))
+				tolerance = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-output"))
+				output = args[++i];
+			else if (args[i].equals("-baseline"))
+				baseline = args[++i];
+			else if (args[i].equals("-update"))
+				update = true;
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		
+		//warmup, also gives the time to the first finished game of a cold JVM
+		Driver.setSeed(seed);
+		Driver.initializeTable();
+		Driver.trainGames(1);
+		long firstGameMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		Driver.trainGames(warmupGames);
+		Driver.testGames(false, testingGames);
+		
+		if (repeats < 1)
+			throw new IllegalArgumentException("At least one repetition is needed:  " + repeats);
+		
+		//measured runs, each on a fresh table with the same seed
+		double [][] throughputs = new double[THROUGHPUT.length][repeats];
+		long trainSteps = 0;
+		long testSteps = 0;
+		long peakHeap = 0;
+		for (int r = 0; r < repeats; r++)
+		{
+			Driver.setSeed(seed);
+			Driver.initializeTable();
+			Driver.bounceFrequencyTest.clear();
+			System.gc();
+			resetPeakHeap();
+			
+			long steps = Driver.getStepsPlayed();
+			long start = System.nanoTime();
+			Driver.trainGames(trainingGames);
+			long trained = System.nanoTime();
+			long runTrainSteps = Driver.getStepsPlayed() - steps;
+			
+			Driver.testGames(false, testingGames);
+			long tested = System.nanoTime();
+			long runTestSteps = Driver.getStepsPlayed() - steps - runTrainSteps;
+			
+			if (r > 0 && (runTrainSteps != trainSteps || runTestSteps != testSteps))
+				System.out.println("Warning:  repetition " + (r+1) + " simulated other steps than the first, the workload is not deterministic");
+			trainSteps = runTrainSteps;
+			testSteps = runTestSteps;
+			peakHeap = Math.max(peakHeap, peakHeap());
+			
+			throughputs[0][r] = trainSteps/((trained-start)/1e9);
+			throughputs[1][r] = trainingGames/((trained-start)/1e9);
+			throughputs[2][r] = testSteps/((tested-trained)/1e9);
+			throughputs[3][r] = testingGames/((tested-trained)/1e9);
+			System.out.printf(Locale.ROOT, "Repetition %d:  %.0f train steps/sec, %.0f test steps/sec%n", r+1, 
+					throughputs[0][r], throughputs[2][r]);
+		}
+		
+		LinkedHashMap<String, Double> result = new LinkedHashMap<String, Double>();
+		DiscretizationSpec spec = Driver.getDiscretization();
+		if (spec.isUniform())
+			result.put("maxDiscrete", (double) spec.rows());
+		else
+			result.put("discretizationHash", (double) spec.hashCode());
+		result.put("trainingGames", (double) trainingGames);
+		result.put("testingGames", (double) testingGames);
+		result.put("seed", (double) seed);
+		result.put("repeats", (double) repeats);
+		result.put("trainSteps", (double) trainSteps);
+		result.put("testSteps", (double) testSteps);
+		result.put("testAverageBounces", averageTestBounces());
+		for (int i = 0; i < THROUGHPUT.length; i++)
+		{
+			double best = max(throughputs[i]);
+			double median = median(throughputs[i]);
+			result.put(THROUGHPUT[i], best);
+			result.put(THROUGHPUT[i] + "Median", median);
+			result.put(THROUGHPUT[i] + "Spread", 100*(best-median)/best);
+		}
+		result.put("peakHeapMB", peakHeap/(1024.0*1024.0));
+		result.put("timeToFirstGameMs", (double) firstGameMillis);
+		
+		Map<String, String> machine = machine();
+		String json = toJson(machine, result);
+		System.out.print(json);
+		Files.write(Paths.get(output), json.getBytes(StandardCharsets.UTF_8));
+		
+		if (update)
+		{
+			Path baselinePath = Paths.get(baseline);
+			if (baselinePath.getParent() != null)
+				Files.createDirectories(baselinePath.getParent());
+			Files.write(baselinePath, json.getBytes(StandardCharsets.UTF_8));
+			System.out.println("Baseline " + baseline + " updated");
+			return;
+		}
+		
+		if (!Files.exists(Paths.get(baseline)))
+		{
+			System.out.println("No baseline at " + baseline + ", run with -update to record one");
+			return;
+		}
+		
+		String baselineJson = new String(Files.readAllBytes(Paths.get(baseline)), StandardCharsets.UTF_8);
+		warnOfOtherMachine(machine, parseText(baselineJson));
+		System.exit(compare(result, parse(baselineJson), tolerance));
+	}
+	
+	
+	/**
+	 * @return		the machine the benchmark runs on, by the fields of MACHINE
+	 */
+	private static Map<String, String> machine()
+	{
+		String cpu = System.getProperty("os.arch");
+		try
+		{
+			for (String line : Files.readAllLines(Paths.get("/proc/cpuinfo"), StandardCharsets.UTF_8))
+			{
+				if (line.startsWith("model name"))
+				{
+					cpu = line.substring(line.indexOf(':')+1).trim();
+					break;
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			//no cpuinfo outside Linux, the architecture has to do
+		}
+		
+		Map<String, String> machine = new LinkedHashMap<String, String>();
+		machine.put("cpu", cpu);
+		machine.put("cores", Integer.toString(Runtime.getRuntime().availableProcessors()));
+		machine.put("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.runtime.version"));
+		machine.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+		return machine;
+	}
+	
+	
+	/**
+	 * Print the machine of the baseline, with a warning if the benchmark runs on another one.
+	 */
+	private static void warnOfOtherMachine(Map<String, String> current, Map<String, String> baseline)
+	{
+		if (!baseline.containsKey("cpu"))
+		{
+			System.out.println("\nWarning:  the baseline does not record its machine, the throughputs may not be comparable");
+			return;
+		}
+		
+		System.out.println("\nBaseline recorded on:  " + baseline.get("cpu") + ", " + baseline.get("cores") + " cores, "
+				+ baseline.get("jvm") + ", " + baseline.get("os"));
+		for (String field : MACHINE)
+		{
+			if (!Objects.equals(current.get(field), baseline.get(field)))
+			{
+				System.out.println("Warning:  running with another " + field + " (" + current.get(field)
+						+ "), the throughputs are not comparable");
+			}
+		}
+	}
+	
+	
+	/**
+	 * Print the comparison with the baseline.
+	 * 
+	 * @return		exit status, 0 if no throughput regressed past the tolerance
+	 */
+	private static int compare(Map<String, Double> current, Map<String, Double> baseline, double tolerance)
+	{
+		for (String field : WORKLOAD)
+		{
+			if (!Objects.equals(current.get(field), baseline.get(field)))
+			{
+				System.out.println("Baseline workload differs in " + field + ":  baseline " + baseline.get(field)
+						+ ", current " + current.get(field));
+				return 2;
+			}
+		}
+		
+		if (!current.get("trainSteps").equals(baseline.get("trainSteps")))
+			System.out.println("Warning:  simulated steps differ from the baseline, game or learning behaviour changed");
+		
+		boolean regressed = false;
+		System.out.printf("%n%-20s %14s %14s %9s %9s%n", "metric", "baseline", "current", "change", "allowed");
+		for (String field : THROUGHPUT)
+		{
+			double before = baseline.containsKey(field) ? baseline.get(field) : Double.NaN;
+			double after = current.get(field);
+			double change = 100*(after-before)/before;
+			
+			//baselines from before the repetitions have no spread
+			double spread = current.get(field + "Spread");
+			if (baseline.containsKey(field + "Spread"))
+				spread += baseline.get(field + "Spread");
+			double allowed = Math.max(tolerance, spread);
+			
+			boolean failed = change < -allowed;
+			regressed |= failed;
+			
+			System.out.printf("%-20s %14.1f %14.1f %+8.1f%% %8.1f%%%s%n", field, before, after, change, allowed, 
+					failed ? "  REGRESSED" : "");
+		}
+		
+		if (regressed)
+		{
+			System.out.println("\nThroughput regressed by more than the allowed percentage against the baseline");
+			return 1;
+		}
+		
+		System.out.println("\nThroughput within the allowed percentage of the baseline");
+		return 0;
+	}
+	
+	
+	/**
+	 * @return		median of the values
+	 */
+	private static double median(double [] values)
+	{
+		double [] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length/2;
+		return (sorted.length % 2 == 1) ? sorted[middle] : (sorted[middle-1] + sorted[middle])/2;
+	}
+	
+	
+	/**
+	 * @return		greatest of the values
+	 */
+	private static double max(double [] values)
+	{
+		double max = values[0];
+		for (double value : values)
+			max = Math.max(max, value);
+		return max;
+	}
+	
+	
+	/**
+	 * @return		average bounces of the test games since the test histogram was last cleared
+	 */
+	private static double averageTestBounces()
+	{
+		long games = 0;
+		long bounces = 0;
+		for (Map.Entry<Integer, Integer> entry : Driver.bounceFrequencyTest.entrySet())
+		{
+			games += entry.getValue();
+			bounces += (long)(entry.getKey())*entry.getValue();
+		}
+		
+		return (games == 0) ? 0 : (double)(bounces)/games;
+	}
+	
+	
+	private static void resetPeakHeap()
+	{
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+		}
+	}
+	
+	
+	/**
+	 * @return		sum of the peak usage of the heap pools in bytes
+	 */
+	private static long peakHeap()
+	{
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		}
+		
+		return peak;
+	}
+	
+	
+	/**
+	 * Write a flat JSON object, the texts first and integral values without a fraction.
+	 */
+	private static String toJson(Map<String, String> texts, Map<String, Double> fields)
+	{
+		StringBuilder json = new StringBuilder("{\n");
+		for (Map.Entry<String, String> entry : texts.entrySet())
+		{
+			String text = entry.getValue().replace("\\", "\\\\").replace("\"", "'");
+			json.append("  \"").append(entry.getKey()).append("\": \"").append(text).append("\",\n");
+		}
+		
+		Iterator<Map.Entry<String, Double>> entries = fields.entrySet().iterator();
+		while (entries.hasNext())
+		{
+			Map.Entry<String, Double> entry = entries.next();
+			double value = entry.getValue();
+			String number = (value == Math.rint(value) && Math.abs(value) < 1e15)
+					? Long.toString((long) value) : String.format(Locale.ROOT, "%.3f", value);
+			
+			json.append("  \"").append(entry.getKey()).append("\": ").append(number);
+			json.append(entries.hasNext() ? ",\n" : "\n");
+		}
+		
+		return json.append("}\n").toString();
+	}
+	
+	
+	/**
+	 * Read the numeric fields of a flat JSON object.
+	 */
+	private static Map<String, Double> parse(String json)
+	{
+		Map<String, Double> fields = new HashMap<String, Double>();
+		Matcher matcher = FIELD.matcher(json);
+		while (matcher.find())
+			fields.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+		
+		return fields;
+	}
+	
+	
+	/**
+	 * Read the text fields of a flat JSON object.
+	 */
+	private static Map<String, String> parseText(String json)
+	{
+		Map<String, String> fields = new HashMap<String, String>();
+		Matcher matcher = TEXT_FIELD.matcher(json);
+		while (matcher.find())
+			fields.put(matcher.group(1), matcher.group(2));
+		
+		return fields;
+	}
+}
@@ -0,0 +1,240 @@
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Runs training games on a background thread so that training can be embedded in other programs.
+ * 
+ * start returns a CompletableFuture completed with the number of games played.  Cancelling the
+ * future stops training at the next game boundary.  pause returns once training has stopped
+ * between two games, after which Driver.scoreBoard can be inspected or checkpointed until
+ * resume is called.
+ * 
+ * Training works on the static state of Driver, set up beforehand with Driver.initializeTable,
+ * so only one Trainer can run at a time.  Games are played by Driver.trainGames, so the learning
+ * curve, snapshot evaluation and visitation samples work as in Driver.main.  Actor threads and
+ * population training play many games at once and cannot be paused between games, so a
+ * trainer refuses to start with them.
+ * 
+ * 		Trainer trainer = new Trainer();
+ * 		trainer.addListener(listener, 1000);
+ * 		CompletableFuture<Integer> done = trainer.start(200000);
+ */
+public class Trainer
+{
+	//set while any trainer is running, Driver's state cannot be shared
+	private static final AtomicBoolean ACTIVE = new AtomicBoolean(false);
+	
+	private List<Registration> listeners = new CopyOnWriteArrayList<Registration>();
+	private CompletableFuture<Integer> future = null;
+	
+	//pause handshake, guarded by this
+	private boolean pauseRequested = false;
+	private boolean paused = false;
+	
+	
+	/**
+	 * Listener with its own reporting interval and running sum of bounces.
+	 */
+	private static class Registration
+	{
+		private TrainingListener listener;
+		private int everyGames;
+		private long bounces = 0;
+		
+		private Registration(TrainingListener listener, int everyGames)
+		{
+			this.listener = listener;
+			this.everyGames = everyGames;
+		}
+	}
+	
+	
+	/**
+	 * Add a listener, before start so that its first average covers a whole interval.
+	 * 
+	 * @param listener		listener to notify
+	 * @param everyGames	number of games between notifications
+	 */
+	public void addListener(TrainingListener listener, int everyGames)
+	{
+		if (everyGames <= 0)
+			throw new IllegalArgumentException("everyGames must be positive:  " + everyGames);
+		
+		listeners.add(new Registration(listener, everyGames));
+	}
+	
+	
+	/**
+	 * Start training on a new thread.
+	 * 
+	 * @param games		number of training games to play
+	 * @return			future completed with the games played, cancel it to stop training
+	 * @throws IllegalStateException	if this or another trainer is already running, a cancelled
+	 * 									trainer runs until the end of its current game, or Driver
+	 * 									is set up to train in parallel
+	 */
+	public synchronized CompletableFuture<Integer> start(final int games)
+	{
+		if (Driver.isTrainingInParallel())
+			throw new IllegalStateException("Trainer needs training on the main thread, ACTOR_THREADS and POPULATION_SIZE must be 0");
+		if (!ACTIVE.compareAndSet(false, true))
+			throw new IllegalStateException("A trainer is already running");
+		
+		final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+		future = result;
+		
+		//wake a paused training thread or a waiting pause call when the future is cancelled
+		result.whenComplete(new BiConsumer<Integer, Throwable>()
+		{
+			@Override
+			public void accept(Integer gamesPlayed, Throwable failure)
+			{
+				synchronized (Trainer.this)
+				{
+					Trainer.this.notifyAll();
+				}
+			}
+		});
+		
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int played = 0;
+				Throwable failure = null;
+				try
+				{
+					played = train(games, result);
+				}
+				catch (Throwable e)
+				{
+					failure = e;
+				}
+				
+				synchronized (Trainer.this)
+				{
+					paused = false;
+				}
+				
+				//released before completing, so the next trainer can be started from a callback of the future
+				ACTIVE.set(false);
+				
+				if (failure != null)
+					result.completeExceptionally(failure);
+				else
+					result.complete(played);
+			}
+		}, "trainer");
+		thread.start();
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Ask training to pause and wait until it has stopped between two games.
+	 * 
+	 * @return		true if training is paused, false if it finished or was cancelled first
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean pause() throws InterruptedException
+	{
+		if (future == null)
+			throw new IllegalStateException("Training was not started");
+		
+		pauseRequested = true;
+		while (!paused && !future.isDone())
+			wait();
+		
+		return paused;
+	}
+	
+	
+	/**
+	 * Let paused training carry on.
+	 */
+	public synchronized void resume()
+	{
+		pauseRequested = false;
+		notifyAll();
+	}
+	
+	
+	/**
+	 * @return		true while training is stopped by pause
+	 */
+	public synchronized boolean isPaused()
+	{
+		return paused;
+	}
+	
+	
+	/**
+	 * Body of the training thread.
+	 */
+	private int train(final int games, final CompletableFuture<Integer> result) throws InterruptedException
+	{
+		waitWhilePaused(result);
+		if (result.isCancelled())
+			return 0;
+		
+		final int [] played = {0};
+		final boolean [] interrupted = {false};
+		Driver.trainGames(games, new IntPredicate()
+		{
+			@Override
+			public boolean test(int bounces)
+			{
+				played[0]++;
+				for (Registration registration : listeners)
+				{
+					registration.bounces += bounces;
+					if (played[0] % registration.everyGames == 0)
+					{
+						double average = (double)(registration.bounces)/registration.everyGames;
+						registration.bounces = 0;
+						registration.listener.progress(played[0], games, average);
+					}
+				}
+				
+				try
+				{
+					waitWhilePaused(result);
+				}
+				catch (InterruptedException e)
+				{
+					interrupted[0] = true;
+					return false;
+				}
+				return !result.isCancelled();
+			}
+		});
+		
+		if (interrupted[0])
+			throw new InterruptedException("Training interrupted while paused");
+		return played[0];
+	}
+	
+	
+	/**
+	 * Park the training thread between games while a pause is requested.
+	 */
+	private synchronized void waitWhilePaused(CompletableFuture<Integer> result) throws InterruptedException
+	{
+		if (!pauseRequested)
+			return;
+		
+		paused = true;
+		notifyAll();
+		
+		while (pauseRequested && !result.isCancelled())
+			wait();
+		
+		paused = false;
+	}
+}
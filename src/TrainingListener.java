@@ -0,0 +1,13 @@
+/**
+ * Receives the progress of a Trainer.  Called on the training thread between games, so the
+ * Q-table can be read safely but the call holds up training until it returns.
+ */
+public interface TrainingListener
+{
+	/**
+	 * @param gamesPlayed		training games played so far
+	 * @param totalGames		training games requested
+	 * @param averageBounces	average bounces of the games since the last call
+	 */
+	public void progress(int gamesPlayed, int totalGames, double averageBounces);
+}
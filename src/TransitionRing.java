@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Single-producer single-consumer ring of transition records.
+ * 
+ * A record is RECORD_INTS primitive ints, so handing a transition over allocates nothing.
+ * The producer and the consumer each own one counter and only publish it with an ordered
+ * write, no locks or compare-and-set are involved.  Each side caches the other side's counter
+ * and reloads it only when the ring looks full or empty.
+ */
+public class TransitionRing
+{
+	/**
+	 * Ints per record:  previous state row, previous action, reward, current state row.
+	 */
+	public static final int RECORD_INTS = 4;
+	
+	//positions of the counters in the counter array, a cache line apart so the two threads do not share one
+	private static final int READ = 0;
+	private static final int WRITE = 8;
+	
+	private final int [] buffer;
+	private final int capacity;
+	private final int indexMask;
+	
+	//records read and written so far
+	private final AtomicLongArray counters = new AtomicLongArray(16);
+	
+	//producer's copy of the read counter and consumer's copy of the write counter
+	private long cachedRead = 0;
+	private long cachedWrite = 0;
+	
+	
+	/**
+	 * @param capacity		records the ring can hold, rounded up to a power of two
+	 */
+	public TransitionRing(int capacity)
+	{
+		this.capacity = Integer.highestOneBit(Math.max(capacity-1, 1)) << 1;
+		this.indexMask = this.capacity-1;
+		this.buffer = new int[this.capacity*RECORD_INTS];
+	}
+	
+	
+	/**
+	 * Add a record.  Called by the producer thread only.
+	 * 
+	 * @return		false if the ring is full and nothing was added
+	 */
+	public boolean offer(int previousState, int previousOption, int reward, int currentState)
+	{
+		long write = counters.get(WRITE);
+		if (write-cachedRead >= capacity)
+		{
+			cachedRead = counters.get(READ);
+			if (write-cachedRead >= capacity)
+				return false;
+		}
+		
+		int base = (int)(write & indexMask)*RECORD_INTS;
+		buffer[base] = previousState;
+		buffer[base+1] = previousOption;
+		buffer[base+2] = reward;
+		buffer[base+3] = currentState;
+		
+		//publish the record after its contents
+		counters.lazySet(WRITE, write+1);
+		return true;
+	}
+	
+	
+	/**
+	 * Move waiting records into a batch.  Called by the consumer thread only.
+	 * 
+	 * @param batch			array receiving the records back to back
+	 * @param maxRecords	maximum number of records to take, batch must hold as many
+	 * @return				number of records taken
+	 */
+	public int drain(int [] batch, int maxRecords)
+	{
+		long read = counters.get(READ);
+		if (read >= cachedWrite)
+		{
+			cachedWrite = counters.get(WRITE);
+			if (read >= cachedWrite)
+				return 0;
+		}
+		
+		int records = (int) Math.min(cachedWrite-read, maxRecords);
+		for (int i = 0; i < records; i++)
+		{
+			int base = (int)((read+i) & indexMask)*RECORD_INTS;
+			System.arraycopy(buffer, base, batch, i*RECORD_INTS, RECORD_INTS);
+		}
+		
+		//free the slots only after they are copied
+		counters.lazySet(READ, read+records);
+		return records;
+	}
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+
+/**
+ * UCB1: play the action with the highest upper confidence bound on its utility,
+ * 
+ * 		Q'(s, a) + c*sqrt(ln N(s) / N(s, a))
+ * 
+ * where N(s, a) are the attempts of the action and N(s) those of the state.  Actions never
+ * attempted are played first, in random order.  Actions that look bad are soon left alone,
+ * while the bonus of every action keeps growing slowly, so stale utilities are revisited.
+ * 
+ * UCB1 assumes rewards in [0, 1], but the utilities of a state here differ by powers of GAMMA,
+ * down to 1e-20 far from a bounce, so a bonus added to them decides alone and the agent never
+ * learns.  Q'(s, a) is therefore the utility scaled to [0, 1] between the lowest and highest
+ * utility of the state.  See ExplorationComparison.
+ */
+public class Ucb1Exploration implements ExplorationStrategy 
+{
+	//the constant of the UCB1 paper
+	private static final double DEFAULT_CONFIDENCE = Math.sqrt(2);
+	
+	private double confidence;
+	
+	
+	/**
+	 * UCB1 with c = sqrt(2).
+	 */
+	public Ucb1Exploration()
+	{
+		this(DEFAULT_CONFIDENCE);
+	}
+	
+	
+	/**
+	 * @param confidence		weight c of the confidence bonus against the utilities
+	 */
+	public Ucb1Exploration(double confidence)
+	{
+		this.confidence = confidence;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return String.format(Locale.ROOT, "UCB1 c=%.2f", confidence);
+	}
+	
+	
+	@Override
+	public void reset(int rows)
+	{
+	}
+	
+	
+	@Override
+	public int chooseAction(QTable table, int stateRow, Random random)
+	{
+		int total = 0;
+		int untried = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			int attempts = table.attempts(stateRow, i);
+			if (attempts == 0)
+				untried++;
+			total += attempts;
+		}
+		
+		//untried actions first, in random order so that new states do not all start moving up
+		if (untried > 0)
+		{
+			int pick = random.nextInt(untried);
+			for (int i = 0; i < 3; i++)
+			{
+				if (table.attempts(stateRow, i) == 0 && pick-- == 0)
+					return i;
+			}
+		}
+		
+		//utilities scaled to [0, 1] within the state, as UCB1 expects of its rewards
+		double low = Math.min(table.utility(stateRow, 0), Math.min(table.utility(stateRow, 1), table.utility(stateRow, 2)));
+		double high = Math.max(table.utility(stateRow, 0), Math.max(table.utility(stateRow, 1), table.utility(stateRow, 2)));
+		double range = (high > low) ? high-low : 1;
+		
+		double logTotal = Math.log(total);
+		double max = Double.NEGATIVE_INFINITY;
+		int idx = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			double bound = (table.utility(stateRow, i)-low)/range + confidence*Math.sqrt(logTotal/table.attempts(stateRow, i));
+			if (bound > max)
+			{
+				max = bound;
+				idx = i;
+			}
+		}
+		
+		return idx;
+	}
+	
+	
+	@Override
+	public void actionProbabilities(QTable table, int stateRow, double [] probabilities)
+	{
+		Arrays.fill(probabilities, 0);
+		
+		int untried = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			if (table.attempts(stateRow, i) == 0)
+				untried++;
+		}
+		
+		//untried actions are picked at random, otherwise the choice is deterministic
+		if (untried > 0)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				if (table.attempts(stateRow, i) == 0)
+					probabilities[i] = 1.0/untried;
+			}
+			return;
+		}
+		
+		probabilities[chooseAction(table, stateRow, null)] = 1;
+	}
+}
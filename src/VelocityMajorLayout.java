@@ -0,0 +1,56 @@
+
+/**
+ * Layout with the velocity class outermost, then row, column and paddle.
+ * 
+ * The velocity class stays the same for the whole flight of the ball between two
+ * bounces, so consecutive steps stay inside one contiguous block of the table.
+ */
+public class VelocityMajorLayout implements StateLayout 
+{
+	private int rows;
+	private int columns;
+	private int paddles;
+	
+	
+	/**
+	 * @param maxDiscrete		number of discrete row/column/paddle positions
+	 */
+	public VelocityMajorLayout(int maxDiscrete)
+	{
+		this(DiscretizationSpec.uniform(maxDiscrete));
+	}
+	
+	
+	/**
+	 * @param spec		bins of each dimension of the state
+	 */
+	public VelocityMajorLayout(DiscretizationSpec spec)
+	{
+		this.rows = spec.rows();
+		this.columns = spec.columns();
+		this.paddles = spec.paddles();
+	}
+	
+	
+	@Override
+	public int index(int row, int column, int xVelocity, int yVelocity, int paddle)
+	{
+		int velocityBlock = StateLayout.velocityClass(xVelocity, yVelocity)*rows*columns;
+		
+		return ((velocityBlock + row*columns + column)*paddles) + paddle;
+	}
+	
+	
+	@Override
+	public int size()
+	{
+		return VELOCITY_CLASSES*rows*columns*paddles;
+	}
+	
+	
+	@Override
+	public String name()
+	{
+		return "velocity-major";
+	}
+}
@@ -0,0 +1,211 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Visitation of the discrete state space, built from the attempts in the Q-table.
+ * 
+ * Attempts are summed over the actions of each state and aggregated by ball position
+ * (row and column), and by velocity class against paddle position.  Under-explored
+ * state/action pairs are counted by ball position to show where exploration is starved.
+ * One scan of the table per sample, cheap enough to take every few thousand games.
+ */
+public class VisitationStats
+{
+	//labels of the velocity classes of StateLayout.velocityClass
+	private static final String [] VELOCITY_LABELS = {"away-up", "away-level", "away-down",
+			"toward-up", "toward-level", "toward-down"};
+	
+	//pixels per grid cell of the heatmap image
+	private static int CELL_PIXELS = 24;
+	
+	private DiscretizationSpec spec;
+	
+	//attempts by [ball row][ball column], so a grid reads like the board
+	private long [][] positionAttempts;
+	
+	//under-explored state/action pairs by [ball row][ball column]
+	private int [][] positionStarved;
+	
+	//attempts by [velocity class][paddle position]
+	private long [][] velocityPaddleAttempts;
+	
+	private long totalAttempts = 0;
+	private int unvisitedStates = 0;
+	private int starvedPairs = 0;
+	
+	
+	/**
+	 * Scan a table.
+	 * 
+	 * @param table			Q-table whose attempts to look at
+	 * @param states		discrete state of each row of the table
+	 * @param spec			bins of the discrete states
+	 * @param threshold		attempts at which an action counts as explored
+	 */
+	public VisitationStats(QTable table, Map<Integer, DiscreteState> states, DiscretizationSpec spec, int threshold)
+	{
+		this.spec = spec;
+		this.positionAttempts = new long[spec.rows()][spec.columns()];
+		this.positionStarved = new int[spec.rows()][spec.columns()];
+		this.velocityPaddleAttempts = new long[StateLayout.VELOCITY_CLASSES][spec.paddles()];
+		
+		for (Map.Entry<Integer, DiscreteState> entry : states.entrySet())
+		{
+			int stateRow = entry.getKey();
+			DiscreteState state = entry.getValue();
+			
+			long attempts = 0;
+			for (int i = 0; i < 3; i++)
+			{
+				int actionAttempts = table.attempts(stateRow, i);
+				attempts += actionAttempts;
+				if (actionAttempts < threshold)
+				{
+					positionStarved[state.row][state.column]++;
+					starvedPairs++;
+				}
+			}
+			
+			if (attempts == 0)
+				unvisitedStates++;
+			
+			totalAttempts += attempts;
+			positionAttempts[state.row][state.column] += attempts;
+			velocityPaddleAttempts[StateLayout.velocityClass(state.xVelocity, state.yVelocity)][state.paddlePosition] += attempts;
+		}
+	}
+	
+	
+	/**
+	 * @return		one line summary of the visitation
+	 */
+	public String summary()
+	{
+		return "attempts " + totalAttempts + ", unvisited states " + unvisitedStates
+				+ ", under-explored pairs " + starvedPairs;
+	}
+	
+	
+	/**
+	 * Write the grids as CSV sections, each introduced by a "#" line naming its rows and columns.
+	 * 
+	 * @param fileName		file to write
+	 * @throws IOException
+	 */
+	public void writeCsv(String fileName) throws IOException
+	{
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName))))
+		{
+			out.println("# attempts by ball position, lines are ball rows (y), values ball columns (x)");
+			for (long [] line : positionAttempts)
+				out.println(join(line));
+			
+			out.println();
+			out.println("# under-explored state/action pairs by ball position, lines are ball rows (y), values ball columns (x)");
+			for (int [] line : positionStarved)
+			{
+				long [] values = new long[line.length];
+				for (int i = 0; i < line.length; i++)
+					values[i] = line[i];
+				out.println(join(values));
+			}
+			
+			out.println();
+			out.println("# attempts by velocity class and paddle position, lines are velocity classes, values paddle positions");
+			for (int i = 0; i < velocityPaddleAttempts.length; i++)
+				out.println(VELOCITY_LABELS[i] + "," + join(velocityPaddleAttempts[i]));
+			
+			if (out.checkError())
+				throw new IOException("Could not write " + fileName);
+		}
+	}
+	
+	
+	/**
+	 * Render the attempts by ball position and by velocity class and paddle position as
+	 * heatmaps side by side.  Colours go from black for the least visited cell of each map
+	 * to white for the most visited one.
+	 * 
+	 * @param fileName		PNG file to write
+	 * @throws IOException
+	 */
+	public void writeImage(String fileName) throws IOException
+	{
+		int gap = CELL_PIXELS;
+		int width = (spec.columns() + spec.paddles())*CELL_PIXELS + 3*gap;
+		int height = Math.max(spec.rows(), StateLayout.VELOCITY_CLASSES)*CELL_PIXELS + 2*gap;
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.DARK_GRAY);
+		g.fillRect(0, 0, width, height);
+		
+		drawHeatmap(g, positionAttempts, gap, gap);
+		drawHeatmap(g, velocityPaddleAttempts, 2*gap + spec.columns()*CELL_PIXELS, gap);
+		g.dispose();
+		
+		if (!ImageIO.write(image, "png", new File(fileName)))
+			throw new IOException("No PNG writer available");
+	}
+	
+	
+	/**
+	 * Draw one grid, one cell per value.
+	 */
+	private static void drawHeatmap(Graphics2D g, long [][] grid, int left, int top)
+	{
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (long [] line : grid)
+		{
+			for (long value : line)
+			{
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+		
+		for (int i = 0; i < grid.length; i++)
+		{
+			for (int j = 0; j < grid[i].length; j++)
+			{
+				float heat = (max == min) ? 0 : (float)(grid[i][j]-min)/(max-min);
+				g.setColor(heatColor(heat));
+				g.fillRect(left + j*CELL_PIXELS, top + i*CELL_PIXELS, CELL_PIXELS, CELL_PIXELS);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Black through red and yellow to white.
+	 */
+	private static Color heatColor(float heat)
+	{
+		float red = Math.min(1, 3*heat);
+		float green = Math.min(1, Math.max(0, 3*heat-1));
+		float blue = Math.min(1, Math.max(0, 3*heat-2));
+		return new Color(red, green, blue);
+	}
+	
+	
+	/**
+	 * Join values with commas.
+	 */
+	private static String join(long [] values)
+	{
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < values.length; i++)
+		{
+			if (i > 0)
+				line.append(',');
+			line.append(values[i]);
+		}
+		return line.toString();
+	}
+}